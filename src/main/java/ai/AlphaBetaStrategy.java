@@ -0,0 +1,335 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AlphaBetaStrategy implements PonderingStrategy {
+    public static final long DEFAULT_TIME = 2000;
+    private final long timeMillis;
+    private final int maxDepth;
+    private final TranspositionTable table;
+    private final Searcher[] searchers;
+    private final ExecutorService helpers;
+    private final ExecutorService ponderer;
+    private final EndgameSolver solver;
+    private Future<Integer> pondering;
+    //the limits of the running search or pondering, cancelled by cancel
+    private volatile SearchLimits limits;
+    private volatile Searcher lastResult;
+    private OpeningBook book;
+
+    /**
+     * Creates the strategy with the default thinking time per move, no depth limit,
+     * the default transposition table and one search thread per available processor.
+     */
+    public AlphaBetaStrategy() {
+        this(DEFAULT_TIME, Searcher.MAX_PLY, TranspositionTable.getDefault(),
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a single threaded strategy with the given thinking time per move and
+     * maximum depth, using the default transposition table.
+     *
+     * @param timeMillis the time in milliseconds the strategy may think per move
+     * @param maxDepth   the deepest iteration of the search
+     */
+    public AlphaBetaStrategy(long timeMillis, int maxDepth) {
+        this(timeMillis, maxDepth, TranspositionTable.getDefault(), 1);
+    }
+
+    /**
+     * Creates a single threaded strategy with the given thinking time per move, maximum
+     * depth and transposition table. The table can be shared with other strategies.
+     *
+     * @param timeMillis the time in milliseconds the strategy may think per move
+     * @param maxDepth   the deepest iteration of the search
+     * @param table      the transposition table used by the search
+     */
+    public AlphaBetaStrategy(long timeMillis, int maxDepth, TranspositionTable table) {
+        this(timeMillis, maxDepth, table, 1);
+    }
+
+    /**
+     * Creates the strategy with the given thinking time per move, maximum depth,
+     * transposition table and number of search threads. With more than one thread
+     * the extra threads search the same position as helpers (Lazy SMP) and pass
+     * their results to the main search through the shared table.
+     *
+     * @param timeMillis the time in milliseconds the strategy may think per move
+     * @param maxDepth   the deepest iteration of the search
+     * @param table      the transposition table used by the search
+     * @param threads    the number of threads searching each move
+     */
+    //@ requires threads >= 1;
+    public AlphaBetaStrategy(long timeMillis, int maxDepth, TranspositionTable table,
+                             int threads) {
+        this.timeMillis = timeMillis;
+        this.maxDepth = maxDepth;
+        this.table = table;
+        this.searchers = new Searcher[Math.max(1, threads)];
+        for (int i = 0; i < searchers.length; i++) {
+            searchers[i] = new Searcher(table, i);
+        }
+        if (searchers.length > 1) {
+            helpers = Executors.newFixedThreadPool(searchers.length - 1, runnable -> {
+                Thread thread = new Thread(runnable, "search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            helpers = null;
+        }
+        ponderer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-ponder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lastResult = searchers[0];
+        book = OpeningBook.getDefault();
+        solver = new EndgameSolver();
+    }
+
+    /**
+     * Determines a move with a negamax alpha-beta search. The search is deepened one ply
+     * at a time, with the best line of the previous iteration searched first, until the
+     * thinking time is used up. The helper threads are stopped as soon as the main
+     * search returns, and the move of the deepest completed search is played.
+     * The table and the principal variation are kept between moves, so when the
+     * opponent plays the predicted reply the next search starts from its results.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @return the best move found, or null if the game is over
+     */
+    @Override
+    public Move determineMove(Board board, Marble marble) {
+        return determineMove(board, marble, SearchLimits.moveTime(timeMillis));
+    }
+
+    /**
+     * Determines a move like determineMove, but searches until the deadline of the limits
+     * instead of for the thinking time of the strategy. The node budget is shared equally
+     * by the search threads. When a limit is reached or the search is cancelled, the move
+     * of the deepest completed iteration is returned. Positions of the opening
+     * book are not searched, the best book move is played at once, and positions
+     * with few empty fields are solved exactly.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @param limits the deadline and node budget of the search
+     * @return the best move found, or null if the game is over
+     */
+    @Override
+    public synchronized Move determineMove(Board board, Marble marble, SearchLimits limits) {
+        stopPondering();
+        this.limits = limits;
+        if (board.gameOver()) {
+            return null;
+        }
+        Move bookMove = book == null ? null : book.bestMove(board, marble);
+        if (bookMove != null) {
+            return bookMove;
+        }
+        if (EndgameSolver.empties(board) <= EndgameSolver.DEFAULT_EMPTIES) {
+            return Move.of(solver.bestMove(board.copy(), marble));
+        }
+        for (Searcher searcher : searchers) {
+            searcher.prepare();
+        }
+        return Move.of(search(board.copy(), marble,
+                limits.withNodes(Math.max(1, limits.getNodes() / searchers.length))));
+    }
+
+    /**
+     * Stops the running search, which then returns the best move found so far,
+     * or the pondering.
+     */
+    @Override
+    public void cancel() {
+        SearchLimits running = limits;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    /**
+     * Searches the opponent's position in the background until stopPondering is called.
+     * The results are kept in the transposition table, and the principal variation
+     * predicts our reply, so the next determineMove starts with both.
+     *
+     * @param board  the board after our move, it is not changed
+     * @param marble the marble of the opponent, who is to move on the board
+     */
+    @Override
+    public synchronized void ponder(Board board, Marble marble) {
+        stopPondering();
+        if (board.gameOver()) {
+            return;
+        }
+        //prepared here, so a stop sent before the search has started is not lost
+        for (Searcher searcher : searchers) {
+            searcher.prepare();
+        }
+        Board root = board.copy();
+        SearchLimits unlimited = SearchLimits.none();
+        limits = unlimited;
+        pondering = ponderer.submit(() -> search(root, marble, unlimited));
+    }
+
+    /**
+     * Stops the background search and waits until all its threads have ended.
+     */
+    @Override
+    public synchronized void stopPondering() {
+        if (pondering == null) {
+            return;
+        }
+        for (Searcher searcher : searchers) {
+            searcher.stop();
+        }
+        try {
+            pondering.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        pondering = null;
+    }
+
+    /**
+     * Stops the pondering and shuts down the helper and ponder threads.
+     */
+    @Override
+    public synchronized void close() {
+        stopPondering();
+        if (helpers != null) {
+            helpers.shutdown();
+        }
+        ponderer.shutdown();
+    }
+
+    /**
+     * Searches the board with the main searcher on the calling thread and the helpers on
+     * the helper threads. The searchers must be prepared before.
+     *
+     * @param root   the board we search
+     * @param marble the marble to move
+     * @param limits the deadline, the number of nodes every searcher may search and the
+     *               cancellation
+     * @return the code of the move of the deepest completed search, or -1 if there is none
+     */
+    private int search(Board root, Marble marble, SearchLimits limits) {
+        table.newSearch();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 1; i < searchers.length; i++) {
+            Searcher helper = searchers[i];
+            results.add(helpers.submit(
+                    () -> helper.search(root, marble, limits, maxDepth)));
+        }
+        int move = searchers[0].search(root, marble, limits, maxDepth);
+        Searcher best = searchers[0];
+        for (int i = 1; i < searchers.length; i++) {
+            searchers[i].stop();
+        }
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                int helperMove = results.get(i).get();
+                Searcher helper = searchers[i + 1];
+                if (helperMove >= 0 && helper.getCompletedDepth() > best.getCompletedDepth()) {
+                    best = helper;
+                    move = helperMove;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        lastResult = best;
+        return move;
+    }
+
+    /**
+     * Sets the opening book the strategy consults before searching. By default this is
+     * the book named by the system property pentago.book.
+     *
+     * @param book the opening book, or null to search every move
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Returns the transposition table of the strategy, for example to read its statistics.
+     *
+     * @return the transposition table
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the number of threads searching each move.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return searchers.length;
+    }
+
+    /**
+     * Returns the depth of the last fully searched iteration of the last move.
+     *
+     * @return the completed depth
+     */
+    public int getLastDepth() {
+        return lastResult.getCompletedDepth();
+    }
+
+    /**
+     * Returns the number of nodes searched for the last move by all threads together.
+     *
+     * @return the node count
+     */
+    public long getLastNodes() {
+        long nodes = 0;
+        for (Searcher searcher : searchers) {
+            nodes += searcher.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the share of the cutoffs of the last move, over all threads, that the first
+     * move searched in the node caused. The closer to 1, the better the moves are ordered.
+     *
+     * @return the cutoff-on-first-move rate between 0 and 1
+     */
+    public double getLastFirstMoveCutoffRate() {
+        long cutoffs = 0;
+        long first = 0;
+        for (Searcher searcher : searchers) {
+            cutoffs += searcher.getCutoffs();
+            first += searcher.getFirstMoveCutoffs();
+        }
+        return cutoffs == 0 ? 0 : (double) first / cutoffs;
+    }
+
+    /**
+     * Returns the score of the last move for the marble that played it.
+     *
+     * @return the score of the last fully searched iteration
+     */
+    public int getLastScore() {
+        return lastResult.getBestScore();
+    }
+}
@@ -0,0 +1,637 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class DistributedStrategy implements Strategy {
+    //Splits the root moves of an iterative deepening search over RunSearchWorker processes.
+    //Every iteration first searches the best move of the previous iteration on one worker,
+    //so the other moves are searched with its score as alpha (young brothers wait). The other
+    //moves are then dealt out to the workers in order, every worker taking moves from the
+    //front of its own queue and, when that is empty, stealing from the back of the longest
+    //queue of another worker. Every worker is driven by its own thread, which sends a task and
+    //waits for its result, so a worker only ever has one task.
+    public static final String PROPERTY = "pentago.workers";
+    public static final long DEFAULT_TIME = 2000;
+    private static final int CONNECT_TIMEOUT = 2000;
+    //how long the workers get to answer a cancel before their connection is dropped
+    private static final long CANCEL_GRACE = 1000;
+    //how often the coordinator looks whether the limits were cancelled while it waits
+    private static final long POLL_MILLIS = 20;
+
+    private final List<InetSocketAddress> addresses;
+    private final long timeMillis;
+    private final int maxDepth;
+    private final MoveGenerator generator;
+    private final ExecutorService drivers;
+    private final List<Worker> workers;
+    private final List<InetSocketAddress> unreachable;
+    private AlphaBetaStrategy local;
+    //the limits of the running search, cancelled by cancel
+    private volatile SearchLimits limits;
+    private int nextTask;
+    private long lastNodes;
+    private int lastDepth;
+    private int lastScore;
+
+    //the state of the running iteration, guarded by this lock
+    private final Object lock;
+    private List<ArrayDeque<Integer>> queues;
+    private int[] scores;
+    private boolean[] done;
+    private int alpha;
+    private long iterationNodes;
+    //counts the runs, so a driver that outlived its run cannot change a later one
+    private int generation;
+
+    /**
+     * Creates the strategy with the default thinking time per move and no depth limit.
+     *
+     * @param addresses the host and port of every worker
+     */
+    public DistributedStrategy(List<InetSocketAddress> addresses) {
+        this(addresses, DEFAULT_TIME, Searcher.MAX_PLY);
+    }
+
+    /**
+     * Creates the strategy with the given thinking time per move and maximum depth.
+     * The workers are connected when the first move is determined.
+     *
+     * @param addresses  the host and port of every worker
+     * @param timeMillis the time in milliseconds the strategy may think per move
+     * @param maxDepth   the deepest iteration of the search
+     */
+    //@ requires addresses != null && maxDepth >= 1;
+    public DistributedStrategy(List<InetSocketAddress> addresses, long timeMillis, int maxDepth) {
+        this.addresses = new ArrayList<>(addresses);
+        this.timeMillis = timeMillis;
+        this.maxDepth = maxDepth;
+        generator = new MoveGenerator();
+        drivers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "distributed-driver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers = new CopyOnWriteArrayList<>();
+        unreachable = new ArrayList<>();
+        lock = new Object();
+    }
+
+    /**
+     * Parses a list of workers like host:port,host:port. A worker without a host
+     * is looked for on the local machine.
+     *
+     * @param list the comma separated workers
+     * @return the addresses of the workers
+     * @throws IllegalArgumentException if a worker has no valid port
+     */
+    public static List<InetSocketAddress> parseAddresses(String list) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String worker : list.split(",")) {
+            worker = worker.trim();
+            if (worker.isEmpty()) {
+                continue;
+            }
+            int colon = worker.lastIndexOf(':');
+            String host = colon <= 0 ? "localhost" : worker.substring(0, colon);
+            int port = Integer.parseInt(worker.substring(colon + 1));
+            addresses.add(new InetSocketAddress(host, port));
+        }
+        return addresses;
+    }
+
+    /**
+     * Determines a move by splitting the root moves over the workers, searching for the
+     * thinking time of the strategy.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @return the best move found, or null if the game is over
+     */
+    @Override
+    public Move determineMove(Board board, Marble marble) {
+        return determineMove(board, marble, SearchLimits.moveTime(timeMillis));
+    }
+
+    /**
+     * Determines a move by splitting the root moves over the workers until the deadline of
+     * the limits, the node budget is not used. When no worker can be reached, the move is
+     * searched in this process instead. When the deadline passes or the search is
+     * cancelled, the move of the deepest completed iteration is returned.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @param limits the deadline of the search
+     * @return the best move found, or null if the game is over
+     */
+    @Override
+    public synchronized Move determineMove(Board board, Marble marble, SearchLimits limits) {
+        this.limits = limits;
+        lastNodes = 0;
+        lastDepth = 0;
+        if (board.gameOver()) {
+            return null;
+        }
+        connect();
+        if (workers.isEmpty()) {
+            return searchLocally(board, marble, limits);
+        }
+        MoveList list = new MoveList();
+        generator.generate(board, marble, list);
+        int[] order = new int[list.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = list.get(i);
+        }
+        int bestMove = order[0];
+        for (int depth = 1; depth <= Math.min(maxDepth, Searcher.MAX_PLY - 1)
+                && order.length > 1; depth++) {
+            boolean complete = iterate(board, marble, order, depth, limits);
+            lastNodes += iterationNodes;
+            //a partly searched iteration counts when the previous best move was searched
+            if (!done[0]) {
+                break;
+            }
+            int best = 0;
+            for (int i = 1; i < order.length; i++) {
+                if (done[i] && scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            bestMove = order[best];
+            lastScore = scores[best];
+            if (!complete) {
+                break;
+            }
+            lastDepth = depth;
+            sortByScore(order);
+            if (Math.abs(lastScore) >= Searcher.WIN_BOUND) {
+                break;
+            }
+        }
+        //every worker failed before a depth was completed, so bestMove was never searched
+        if (workers.isEmpty() && lastDepth == 0 && !limits.isExpired()) {
+            return searchLocally(board, marble, limits);
+        }
+        return Move.of(bestMove);
+    }
+
+    /**
+     * Searches the move in this process, for when no worker can be used.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @param limits the deadline of the search
+     * @return the best move found
+     */
+    private Move searchLocally(Board board, Marble marble, SearchLimits limits) {
+        if (local == null) {
+            local = new AlphaBetaStrategy(timeMillis, maxDepth);
+        }
+        Move move = local.determineMove(board, marble, limits);
+        lastNodes += local.getLastNodes();
+        lastDepth = local.getLastDepth();
+        lastScore = local.getLastScore();
+        return move;
+    }
+
+    /**
+     * Searches all root moves to the given depth on the workers.
+     *
+     * @param board  the board of the root
+     * @param marble the marble to move at the root
+     * @param order  the root moves, the best move of the previous iteration first
+     * @param depth  the depth of the iteration
+     * @param limits the deadline and the cancellation of the search
+     * @return whether every root move was searched
+     */
+    private boolean iterate(Board board, Marble marble, int[] order, int depth,
+                            SearchLimits limits) {
+        synchronized (lock) {
+            scores = new int[order.length];
+            done = new boolean[order.length];
+            alpha = -Searcher.INFINITY;
+            iterationNodes = 0;
+        }
+        //moves of a worker that failed are dealt out again to the others
+        boolean finished = true;
+        while (finished && !workers.isEmpty() && !done[0]) {
+            finished = run(board, marble, order, depth, limits, 0, 1);
+        }
+        while (finished && !workers.isEmpty() && !isSearched(1)) {
+            finished = run(board, marble, order, depth, limits, 1, order.length);
+        }
+        return isSearched(0);
+    }
+
+    /**
+     * Returns whether the root moves from the given index on are searched.
+     *
+     * @param from the index of the first move
+     * @return whether all those moves have a score
+     */
+    private boolean isSearched(int from) {
+        synchronized (lock) {
+            for (int i = from; i < done.length; i++) {
+                if (!done[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Deals the unsearched moves between from and to out to the workers and waits until
+     * they are searched, the deadline passes or the search is cancelled.
+     *
+     * @param board  the board of the root
+     * @param marble the marble to move at the root
+     * @param order  the root moves
+     * @param depth  the depth of the iteration
+     * @param limits the deadline and the cancellation of the search
+     * @param from   the index of the first move to deal out
+     * @param to     the index after the last move to deal out
+     * @return whether the workers ran out of moves before the deadline and a cancel
+     */
+    private boolean run(Board board, Marble marble, int[] order, int depth,
+                        SearchLimits limits, int from, int to) {
+        List<Worker> running = new ArrayList<>(workers);
+        int count = running.size();
+        int current;
+        synchronized (lock) {
+            current = ++generation;
+            queues = new ArrayList<>();
+            for (int w = 0; w < count; w++) {
+                queues.add(new ArrayDeque<>());
+            }
+            int next = 0;
+            for (int i = from; i < to; i++) {
+                if (!done[i]) {
+                    queues.get(next++ % count).addLast(i);
+                }
+            }
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < count; w++) {
+            Worker worker = running.get(w);
+            int self = w;
+            futures.add(drivers.submit(() -> drive(worker, self, current, board, marble, order,
+                    depth, limits)));
+        }
+        boolean finished = true;
+        for (int w = 0; w < count; w++) {
+            Future<?> future = futures.get(w);
+            try {
+                if (finished && !await(future, limits)) {
+                    finished = false;
+                    cancelTasks();
+                }
+                future.get(CANCEL_GRACE, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException | InterruptedException e) {
+                running.get(w).close();
+            }
+        }
+        synchronized (lock) {
+            generation++;
+        }
+        workers.removeIf(Worker::isClosed);
+        return finished && !limits.isExpired();
+    }
+
+    /**
+     * Waits until the driver is done or the limits expire. The limits are looked at every
+     * POLL_MILLIS, so a cancel is noticed while the driver waits for its worker.
+     *
+     * @param future the driver
+     * @param limits the deadline and the cancellation of the search
+     * @return whether the driver is done
+     * @throws ExecutionException   if the driver failed
+     * @throws InterruptedException if the thread is interrupted while it waits
+     */
+    private static boolean await(Future<?> future, SearchLimits limits)
+            throws ExecutionException, InterruptedException {
+        while (true) {
+            long wait = TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS);
+            if (limits.hasDeadline()) {
+                wait = Math.min(wait, Math.max(0, limits.getDeadline() - System.nanoTime()));
+            }
+            try {
+                future.get(wait, TimeUnit.NANOSECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                if (limits.isExpired()) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends moves to a worker and records their scores until no move is left to take
+     * or to steal, or the search is stopped.
+     *
+     * @param worker   the worker
+     * @param self     the index of the worker's queue
+     * @param run      the generation of the run the driver belongs to
+     * @param board    the board of the root
+     * @param marble   the marble to move at the root
+     * @param order    the root moves
+     * @param depth    the depth of the iteration
+     * @param limits   the deadline and the cancellation of the search
+     */
+    private void drive(Worker worker, int self, int run, Board board, Marble marble,
+                       int[] order, int depth, SearchLimits limits) {
+        long deadline = limits.getDeadline();
+        while (!limits.isExpired()) {
+            int index;
+            int window;
+            int task;
+            synchronized (lock) {
+                index = run == generation ? take(self) : -1;
+                if (index < 0) {
+                    return;
+                }
+                window = alpha;
+                task = nextTask++;
+            }
+            long millis = deadline == Long.MAX_VALUE ? Long.MAX_VALUE / 1_000_000L
+                    : Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            String[] reply;
+            try {
+                reply = worker.search(task, board, marble, order[index], depth, window, millis);
+            } catch (IOException e) {
+                //the move is left unsearched, it is dealt out again to the other workers
+                worker.close();
+                return;
+            }
+            synchronized (lock) {
+                if (run != generation) {
+                    return;
+                }
+                if (reply[0].equals(RunSearchWorker.RESULT)) {
+                    scores[index] = Integer.parseInt(reply[2]);
+                    done[index] = true;
+                    alpha = Math.max(alpha, scores[index]);
+                    iterationNodes += Long.parseLong(reply[3]);
+                } else if (reply[0].equals(RunSearchWorker.STOPPED)) {
+                    iterationNodes += Long.parseLong(reply[2]);
+                    return;
+                } else {
+                    worker.close();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the next move for a worker: from the front of its own queue, or else
+     * from the back of the longest queue of another worker. Called holding the lock.
+     *
+     * @param self the index of the worker's queue
+     * @return the index of the move, or -1 if every queue is empty
+     */
+    private int take(int self) {
+        if (!queues.get(self).isEmpty()) {
+            return queues.get(self).pollFirst();
+        }
+        ArrayDeque<Integer> victim = null;
+        for (ArrayDeque<Integer> queue : queues) {
+            if (victim == null || queue.size() > victim.size()) {
+                victim = queue;
+            }
+        }
+        return victim == null || victim.isEmpty() ? -1 : victim.pollLast();
+    }
+
+    /**
+     * Sorts the root moves by the scores of the last iteration, best first. The best move
+     * has an exact score, the other scores are upper bounds and only order the moves.
+     *
+     * @param order the root moves, sorted in place along with the scores
+     */
+    private void sortByScore(int[] order) {
+        for (int i = 1; i < order.length; i++) {
+            for (int j = i; j > 0 && scores[j] > scores[j - 1]; j--) {
+                int move = order[j];
+                order[j] = order[j - 1];
+                order[j - 1] = move;
+                int score = scores[j];
+                scores[j] = scores[j - 1];
+                scores[j - 1] = score;
+            }
+        }
+    }
+
+    /**
+     * Connects to the workers that are not connected yet and remembers the ones
+     * that cannot be reached.
+     */
+    private void connect() {
+        workers.removeIf(Worker::isClosed);
+        unreachable.clear();
+        for (InetSocketAddress address : addresses) {
+            boolean connected = false;
+            for (Worker worker : workers) {
+                connected |= worker.address.equals(address);
+            }
+            if (!connected) {
+                try {
+                    workers.add(new Worker(address));
+                } catch (IOException e) {
+                    unreachable.add(address);
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks every worker to stop its running task.
+     */
+    private void cancelTasks() {
+        for (Worker worker : workers) {
+            worker.cancel();
+        }
+    }
+
+    /**
+     * Stops the running search, which then returns the move of the deepest
+     * completed iteration. The search in this process, used when no worker can be
+     * reached, shares the limits and stops too.
+     */
+    @Override
+    public void cancel() {
+        SearchLimits running = limits;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    /**
+     * Closes the connections to the workers and shuts down the driver threads and the
+     * search in this process.
+     */
+    @Override
+    public synchronized void close() {
+        for (Worker worker : workers) {
+            worker.close();
+        }
+        workers.clear();
+        drivers.shutdown();
+        if (local != null) {
+            local.close();
+        }
+    }
+
+    /**
+     * Returns the number of workers the last search used.
+     *
+     * @return the number of connected workers
+     */
+    public synchronized int getWorkerCount() {
+        return workers.size();
+    }
+
+    /**
+     * Returns the workers that could not be connected to at the start of the last search.
+     *
+     * @return the addresses of the unreachable workers
+     */
+    public synchronized List<InetSocketAddress> getUnreachableWorkers() {
+        return new ArrayList<>(unreachable);
+    }
+
+    /**
+     * Returns the number of nodes the workers searched for the last move.
+     *
+     * @return the node count
+     */
+    public synchronized long getLastNodes() {
+        return lastNodes;
+    }
+
+    /**
+     * Returns the depth of the last completed iteration of the last move.
+     *
+     * @return the completed depth
+     */
+    public synchronized int getLastDepth() {
+        return lastDepth;
+    }
+
+    /**
+     * Returns the score of the last move for the marble that played it.
+     *
+     * @return the score of the best move
+     */
+    public synchronized int getLastScore() {
+        return lastScore;
+    }
+
+    private static class Worker {
+        private final InetSocketAddress address;
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+        private volatile int task;
+
+        /**
+         * Connects to a worker.
+         *
+         * @param address the host and port of the worker
+         * @throws IOException if the worker cannot be reached
+         */
+        Worker(InetSocketAddress address) throws IOException {
+            this.address = address;
+            socket = new Socket();
+            socket.connect(address, CONNECT_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            out = new PrintWriter(socket.getOutputStream(), true);
+            task = -1;
+        }
+
+        /**
+         * Sends a task and waits for its result.
+         *
+         * @param id     the id of the task
+         * @param board  the board of the root
+         * @param marble the marble to move at the root
+         * @param move   the root move to search
+         * @param depth  the depth including the root move
+         * @param alpha  the score the marble is already guaranteed
+         * @param millis the time the worker may search
+         * @return the fields of the reply
+         * @throws IOException if the connection fails or is closed
+         */
+        String[] search(int id, Board board, Marble marble, int move, int depth, int alpha,
+                        long millis) throws IOException {
+            task = id;
+            send(RunSearchWorker.SEARCH + "~" + id + "~" + board.bits(Marble.BLACK) + "~"
+                    + board.bits(Marble.WHITE) + "~" + marble + "~" + move + "~" + depth + "~"
+                    + alpha + "~" + millis);
+            String line = in.readLine();
+            task = -1;
+            if (line == null) {
+                throw new IOException("Search worker closed the connection");
+            }
+            return line.split("~");
+        }
+
+        /**
+         * Asks the worker to stop its running task, if any.
+         */
+        void cancel() {
+            int running = task;
+            if (running >= 0) {
+                send(RunSearchWorker.CANCEL + "~" + running);
+            }
+        }
+
+        /**
+         * Sends a message to the worker.
+         *
+         * @param message the message
+         */
+        private synchronized void send(String message) {
+            out.println(message);
+        }
+
+        /**
+         * Closes the connection, a driver waiting for a reply then gets an IOException.
+         */
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //already closed
+            }
+        }
+
+        /**
+         * Returns whether the connection is closed.
+         *
+         * @return whether the worker can no longer be used
+         */
+        boolean isClosed() {
+            return socket.isClosed();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+import game.Symmetry;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class EndgameBitbase {
+    //A bitbase file starts with a header of four ints: MAGIC, VERSION, the largest number
+    //of empty fields of a stored position and the number of entries. It is followed by the
+    //entries, one long each, sorted as unsigned longs. An entry is the hash of the canonical
+    //form of a position with its outcome for the marble to move in the lowest two bits:
+    //1 for a loss, 2 for a draw and 3 for a win, so an entry is never 0.
+    public static final String PROPERTY = "pentago.bitbase";
+    static final int MAGIC = 0x50454231;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 8;
+    static final long VALUE_MASK = 3L;
+    private static EndgameBitbase defaultBitbase;
+    private static boolean defaultLoaded;
+    private static IOException defaultError;
+
+    private final MappedByteBuffer buffer;
+    private final int empties;
+    private final int count;
+
+    /**
+     * Maps the bitbase file into memory and checks its header.
+     *
+     * @param path the path of the bitbase file
+     * @throws IOException if the file cannot be read or is not a valid bitbase
+     */
+    public EndgameBitbase(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid bitbase size: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a bitbase of version " + VERSION + ": " + path);
+        }
+        empties = buffer.getInt(8);
+        count = buffer.getInt(12);
+        if (count < 0 || buffer.capacity() != HEADER_BYTES + (long) count * ENTRY_BYTES) {
+            throw new IOException("Truncated bitbase: " + path);
+        }
+    }
+
+    /**
+     * Returns the bitbase named by the system property pentago.bitbase, opened once and
+     * shared by all solvers. Returns null if the property is not set or the file is not
+     * a valid bitbase, why the file could not be used is kept for getDefaultError.
+     *
+     * @return the default bitbase, or null
+     */
+    public static synchronized EndgameBitbase getDefault() {
+        if (!defaultLoaded) {
+            defaultLoaded = true;
+            String file = System.getProperty(PROPERTY);
+            if (file != null) {
+                try {
+                    defaultBitbase = new EndgameBitbase(Paths.get(file));
+                } catch (IOException e) {
+                    defaultError = e;
+                }
+            }
+        }
+        return defaultBitbase;
+    }
+
+    /**
+     * Returns why the bitbase named by the system property pentago.bitbase could not be
+     * opened. The bitbase is opened first if that was not done yet.
+     *
+     * @return the error, or null if the bitbase was opened or the property is not set
+     */
+    public static synchronized IOException getDefaultError() {
+        getDefault();
+        return defaultError;
+    }
+
+    /**
+     * Looks up the outcome of the position. Black moves first, so only the marble
+     * whose turn it is has an outcome in the bitbase.
+     *
+     * @param board  the board of the position
+     * @param marble the marble to move
+     * @return WIN, DRAW or LOSS for the marble to move, or UNKNOWN if the position is not stored
+     */
+    public int probe(Board board, Marble marble) {
+        if (EndgameSolver.empties(board) > empties || marble != OpeningBook.toMove(board)) {
+            return EndgameSolver.UNKNOWN;
+        }
+        long wanted = Symmetry.canonicalHash(board) & ~VALUE_MASK;
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long entry = buffer.getLong(HEADER_BYTES + middle * ENTRY_BYTES);
+            int compare = Long.compareUnsigned(entry & ~VALUE_MASK, wanted);
+            if (compare == 0) {
+                return value(entry);
+            } else if (compare < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return EndgameSolver.UNKNOWN;
+    }
+
+    /**
+     * Packs a key and an outcome into an entry.
+     *
+     * @param key   the hash of the position
+     * @param value WIN, DRAW or LOSS
+     * @return the entry
+     */
+    static long pack(long key, int value) {
+        return (key & ~VALUE_MASK) | (value + 2);
+    }
+
+    /**
+     * Returns the outcome stored in an entry.
+     *
+     * @param entry the entry
+     * @return WIN, DRAW or LOSS
+     */
+    static int value(long entry) {
+        return (int) (entry & VALUE_MASK) - 2;
+    }
+
+    /**
+     * Returns the largest number of empty fields of a stored position.
+     *
+     * @return the number of empty fields
+     */
+    public int getEmpties() {
+        return empties;
+    }
+
+    /**
+     * Returns the number of positions in the bitbase.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return count;
+    }
+}
@@ -0,0 +1,260 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+import game.Symmetry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EndgameBitbaseGenerator {
+    //Solving every position with K empty fields is out of reach: already for K = 3 there are
+    //trillions of them. The generator therefore solves the endgames of many seeded games
+    //between two SmartStrategy players and stores every position the exact search visits
+    //on the way. The players block wins in one, and a move that would end the game before
+    //K empty fields are left is replaced by a random move that does not, so the games
+    //reach the late game undecided.
+    private static final int BATCH = 8;
+    private static final int SOLVER_TABLE_BITS = 18;
+
+    private final int empties;
+    private final Set<Long> entries;
+    private final AtomicInteger solved;
+
+    /**
+     * Creates a generator for positions with at most the given number of empty fields.
+     *
+     * @param empties the largest number of empty fields of a stored position
+     */
+    public EndgameBitbaseGenerator(int empties) {
+        this.empties = empties;
+        entries = ConcurrentHashMap.newKeySet();
+        solved = new AtomicInteger();
+    }
+
+    /**
+     * Generates a bitbase. Arguments: the bitbase file, the largest number of empty fields
+     * (default 6), the number of games whose endgames are solved (default 1000), the seed
+     * of the games (default 1) and the number of threads (default: number of processors).
+     *
+     * @param args the bitbase file followed by the optional arguments
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: EndgameBitbaseGenerator file [empties] [games] [seed] "
+                    + "[threads]");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        int empties = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+
+        EndgameBitbaseGenerator generator = new EndgameBitbaseGenerator(empties);
+        List<Board> seeds = generator.createSeeds(games, seed);
+        System.out.println(seeds.size() + " distinct positions with " + empties
+                + " empty fields to solve");
+        long start = System.nanoTime();
+        generator.solve(seeds, threads);
+        generator.write(file);
+        System.out.printf("Wrote %d positions to %s in %.1f s%n", generator.entries.size(), file,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Plays seeded games until the given number of empty fields is reached and returns the
+     * undecided positions, each canonical position once.
+     *
+     * @param games the number of games
+     * @param seed  the seed of the players of the first game
+     * @return the canonical boards of the positions
+     */
+    List<Board> createSeeds(int games, long seed) {
+        List<Board> seeds = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        SplittableRandom random = new SplittableRandom(seed);
+        MoveGenerator generator = new MoveGenerator();
+        MoveList moves = new MoveList();
+        for (int game = 0; game < games; game++) {
+            Strategy black = new SmartStrategy(seed + 2L * game);
+            Strategy white = new SmartStrategy(seed + 2L * game + 1);
+            Board board = new Board();
+            Marble marble = Marble.BLACK;
+            while (EndgameSolver.empties(board) > empties && !board.gameOver()) {
+                Move move = (marble == Marble.BLACK ? black : white).determineMove(board, marble);
+                board.makeMove(move.getIndex(), move.getRotation(), marble);
+                if (board.gameOver()) {
+                    board.unmakeMove(move.getIndex(), move.getRotation());
+                    int code = randomQuietMove(board, marble, generator, moves, random);
+                    if (code < 0) {
+                        break;
+                    }
+                    board.makeMove(Move.index(code), Move.rotation(code), marble);
+                }
+                marble = marble.other();
+            }
+            Board canonical = Symmetry.canonical(board);
+            if (!board.gameOver() && seen.add(canonical.hash())) {
+                seeds.add(canonical);
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * Returns a random move that does not end the game.
+     *
+     * @param board     the board, it is restored before returning
+     * @param marble    the marble to move
+     * @param generator the generator of the moves
+     * @param moves     the list the moves are generated in
+     * @param random    the random generator
+     * @return the code of the move, or -1 if every move ends the game
+     */
+    private static int randomQuietMove(Board board, Marble marble, MoveGenerator generator,
+                                       MoveList moves, SplittableRandom random) {
+        generator.generate(board, marble, moves);
+        int quiet = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            if (!board.gameOver()) {
+                moves.set(quiet++, move);
+            }
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+        }
+        return quiet == 0 ? -1 : moves.get(random.nextInt(quiet));
+    }
+
+    /**
+     * Solves the positions on a fork-join pool. Every thread has its own solver, which
+     * records every position it solves in the shared set of entries.
+     *
+     * @param seeds   the positions to solve
+     * @param threads the parallelism of the pool
+     */
+    void solve(List<Board> seeds, int threads) {
+        ThreadLocal<EndgameSolver> solvers = ThreadLocal.withInitial(() -> {
+            EndgameSolver solver = new EndgameSolver(SOLVER_TABLE_BITS);
+            solver.setBitbase(null);
+            solver.setRecorder(entries::add);
+            return solver;
+        });
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new SolveTask(seeds, 0, seeds.size(), solvers));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Writes the entries sorted as unsigned longs, each position once. The file is
+     * written under a temporary name first, so a reader never sees a half written file.
+     *
+     * @param file the path of the bitbase file
+     * @throws IOException if the file cannot be written
+     */
+    void write(Path file) throws IOException {
+        long[] sorted = new long[entries.size()];
+        int n = 0;
+        for (long entry : entries) {
+            //flipping the sign bit makes the signed sort order the unsigned one
+            sorted[n++] = entry ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(sorted);
+        ByteBuffer buffer = ByteBuffer.allocate(EndgameBitbase.HEADER_BYTES
+                + n * EndgameBitbase.ENTRY_BYTES);
+        buffer.position(EndgameBitbase.HEADER_BYTES);
+        int count = 0;
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            long entry = sorted[i] ^ Long.MIN_VALUE;
+            //two outcomes for one key can only come from a hash collision, keep one of them
+            if (count > 0 && (entry & ~EndgameBitbase.VALUE_MASK)
+                    == (previous & ~EndgameBitbase.VALUE_MASK)) {
+                continue;
+            }
+            buffer.putLong(entry);
+            previous = entry;
+            count++;
+        }
+        buffer.putInt(0, EndgameBitbase.MAGIC);
+        buffer.putInt(4, EndgameBitbase.VERSION);
+        buffer.putInt(8, empties);
+        buffer.putInt(12, count);
+        Path temporary = Paths.get(file + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            out.write(buffer.array(), 0, buffer.position());
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private class SolveTask extends RecursiveAction {
+        //tasks are never serialized, RecursiveAction is only Serializable by inheritance
+        private static final long serialVersionUID = 1L;
+        private final transient List<Board> seeds;
+        private final int from;
+        private final int to;
+        private final transient ThreadLocal<EndgameSolver> solvers;
+
+        /**
+         * Creates a task that solves the seeds from index from up to index to.
+         *
+         * @param seeds   all positions to solve
+         * @param from    the first index of this task
+         * @param to      the index after the last one of this task
+         * @param solvers the solvers of the threads
+         */
+        SolveTask(List<Board> seeds, int from, int to, ThreadLocal<EndgameSolver> solvers) {
+            this.seeds = seeds;
+            this.from = from;
+            this.to = to;
+            this.solvers = solvers;
+        }
+
+        /**
+         * Solves the positions itself when there are few of them,
+         * otherwise splits them over two tasks.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH) {
+                EndgameSolver solver = solvers.get();
+                for (int i = from; i < to; i++) {
+                    Board board = seeds.get(i);
+                    Marble marble = OpeningBook.toMove(board);
+                    int value = solver.solve(board, marble);
+                    entries.add(EndgameBitbase.pack(board.hash(), value));
+                    int count = solved.incrementAndGet();
+                    if (count % 100 == 0) {
+                        System.out.println(count + " positions solved, "
+                                + entries.size() + " stored");
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SolveTask(seeds, from, middle, solvers),
+                    new SolveTask(seeds, middle, to, solvers));
+        }
+    }
+}
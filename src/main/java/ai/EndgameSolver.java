@@ -0,0 +1,243 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+import game.Symmetry;
+
+import java.util.function.LongConsumer;
+
+public class EndgameSolver {
+    //Solves positions with few empty fields exactly, with negamax on the three outcomes.
+    //Solved positions are cached in a table of packed entries, see EndgameBitbase.pack,
+    //keyed on the hash of the board and the marble to move.
+    public static final int WIN = 1;
+    public static final int DRAW = 0;
+    public static final int LOSS = -1;
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    public static final int DEFAULT_EMPTIES = 5;
+    public static final int DEFAULT_TABLE_BITS = 20;
+    private static final int PROBES = 4;
+    private static final long WHITE_TO_MOVE = 0x9E3779B97F4A7C15L;
+
+    private final long[] table;
+    private final int mask;
+    private final MoveGenerator generator;
+    private final MoveList[] moves;
+    private EndgameBitbase bitbase;
+    private LongConsumer recorder;
+    private long nodes;
+    private int lastValue;
+
+    /**
+     * Creates a solver with a cache of the default size.
+     */
+    public EndgameSolver() {
+        this(DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * Creates a solver with a cache of 2 to the power tableBits entries.
+     *
+     * @param tableBits the number of bits of a cache index
+     */
+    //@ requires tableBits >= 2 && tableBits <= 30;
+    public EndgameSolver(int tableBits) {
+        table = new long[1 << tableBits];
+        mask = table.length - 1;
+        generator = new MoveGenerator();
+        moves = new MoveList[Searcher.MAX_PLY + 1];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = new MoveList();
+        }
+        bitbase = EndgameBitbase.getDefault();
+    }
+
+    /**
+     * Returns the outcome of the position with perfect play.
+     *
+     * @param board  the board of the position, it is restored before returning
+     * @param marble the marble to move
+     * @return WIN, DRAW or LOSS for the marble to move
+     */
+    public int solve(Board board, Marble marble) {
+        if (board.gameOver()) {
+            return outcome(board, marble);
+        }
+        int stored = bitbase == null ? UNKNOWN : bitbase.probe(board, marble);
+        return stored != UNKNOWN ? stored : negamax(board, marble, 0);
+    }
+
+    /**
+     * Returns the move with the best outcome with perfect play. Among moves with
+     * the same outcome the first generated one is chosen.
+     *
+     * @param board  the board of the position, it is restored before returning
+     * @param marble the marble to move
+     * @return the code of the move, or -1 if the game is over
+     */
+    public int bestMove(Board board, Marble marble) {
+        lastValue = UNKNOWN;
+        if (board.gameOver()) {
+            return -1;
+        }
+        MoveList list = new MoveList();
+        generator.generate(board, marble, list);
+        int best = -1;
+        for (int i = 0; i < list.size() && lastValue != WIN; i++) {
+            int move = list.get(i);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            int value = board.gameOver() ? outcome(board, marble)
+                    : -solve(board, marble.other());
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+            if (best < 0 || value > lastValue) {
+                best = move;
+                lastValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Solves the current board with negamax. A move that wins at once is looked for first,
+     * so a won position is found without searching the other moves.
+     *
+     * @param board  the board of the position
+     * @param marble the marble to move
+     * @param ply    the distance from the position passed to solve
+     * @return WIN, DRAW or LOSS for the marble to move
+     */
+    private int negamax(Board board, Marble marble, int ply) {
+        nodes++;
+        long key = marble == Marble.WHITE ? board.hash() ^ WHITE_TO_MOVE : board.hash();
+        int cached = lookup(key);
+        if (cached != UNKNOWN) {
+            return cached;
+        }
+        MoveList list = moves[ply];
+        generator.generate(board, marble, list);
+        int best = LOSS;
+        for (int i = 0; i < list.size() && best != WIN; i++) {
+            int move = list.get(i);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            if (board.hasWinner() && outcome(board, marble) == WIN) {
+                best = WIN;
+            }
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+        }
+        for (int i = 0; i < list.size() && best != WIN; i++) {
+            int move = list.get(i);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            int value = board.gameOver() ? outcome(board, marble)
+                    : -negamax(board, marble.other(), ply + 1);
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+            best = Math.max(best, value);
+        }
+        store(key, best);
+        if (recorder != null) {
+            recorder.accept(EndgameBitbase.pack(Symmetry.canonicalHash(board), best));
+        }
+        return best;
+    }
+
+    /**
+     * Returns the outcome of a finished game for the given marble. When a rotation completes
+     * lines of both colours the winner is decided like the server does, by Board.getWinner.
+     *
+     * @param board  the board of the finished game
+     * @param marble the marble the outcome is given for
+     * @return WIN, DRAW or LOSS
+     */
+    private static int outcome(Board board, Marble marble) {
+        Marble winner = board.getWinner();
+        return winner == Marble.EMPTY ? DRAW : winner == marble ? WIN : LOSS;
+    }
+
+    /**
+     * Looks up a solved position in the cache.
+     *
+     * @param key the hash of the position and the marble to move
+     * @return the outcome, or UNKNOWN if the position is not in the cache
+     */
+    private int lookup(long key) {
+        long wanted = key & ~EndgameBitbase.VALUE_MASK;
+        int index = (int) key & mask;
+        for (int i = 0; i < PROBES; i++) {
+            long entry = table[(index + i) & mask];
+            if (entry == 0) {
+                return UNKNOWN;
+            }
+            if ((entry & ~EndgameBitbase.VALUE_MASK) == wanted) {
+                return EndgameBitbase.value(entry);
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Stores a solved position in the cache. When all slots of the key are in use
+     * the first one is replaced.
+     *
+     * @param key   the hash of the position and the marble to move
+     * @param value the outcome of the position
+     */
+    private void store(long key, int value) {
+        long wanted = key & ~EndgameBitbase.VALUE_MASK;
+        int index = (int) key & mask;
+        int slot = index;
+        for (int i = 0; i < PROBES; i++) {
+            long entry = table[(index + i) & mask];
+            if (entry == 0 || (entry & ~EndgameBitbase.VALUE_MASK) == wanted) {
+                slot = (index + i) & mask;
+                break;
+            }
+        }
+        table[slot] = EndgameBitbase.pack(key, value);
+    }
+
+    /**
+     * Sets the bitbase that is consulted before a position is solved.
+     *
+     * @param bitbase the bitbase, or null to solve every position
+     */
+    public void setBitbase(EndgameBitbase bitbase) {
+        this.bitbase = bitbase;
+    }
+
+    /**
+     * Sets a consumer that receives every position solved by the search, as an entry
+     * packed from the hash of the canonical form of the position and its outcome.
+     *
+     * @param recorder the consumer of the entries, or null
+     */
+    public void setRecorder(LongConsumer recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Returns the outcome of the move returned by the last call of bestMove.
+     *
+     * @return WIN, DRAW or LOSS for the marble that moved, or UNKNOWN
+     */
+    public int getLastValue() {
+        return lastValue;
+    }
+
+    /**
+     * Returns the number of positions searched since the solver was created.
+     *
+     * @return the node count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of empty fields of the board.
+     *
+     * @param board the board we count the empty fields of
+     * @return the number of empty fields
+     */
+    public static int empties(Board board) {
+        return Long.bitCount(board.bits(Marble.EMPTY));
+    }
+}
@@ -0,0 +1,622 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MctsStrategy implements PonderingStrategy {
+    //The tree is stored in parallel arrays indexed by node, the root is node 0.
+    //The children of a node are a contiguous block starting at firstChild, so a node
+    //needs no object and no list. The reward of a node is counted for the marble that
+    //played the move leading to it, 2 per win and 1 per draw.
+    //
+    //While a thread walks down the tree it adds VIRTUAL_LOSS visits without reward to
+    //every node on its path, which makes other threads prefer different paths. The
+    //virtual visits are replaced by the real result when the playout is finished.
+    //
+    //The tree is kept between moves. When the new position is a node of the old tree,
+    //that subtree is copied to the front of a second set of arrays, which then become
+    //the tree, so the playouts of earlier moves are not lost and the rest is freed.
+    public static final long DEFAULT_TIME = 2000;
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    private static final double EXPLORATION = 1.0;
+    private static final int VIRTUAL_LOSS = 3;
+    private static final int EXPAND_VISITS = 16;
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+    private static final int NOT_EXPANDABLE = -3;
+    private static final int TIME_CHECK_INTERVAL = 63;
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long timeMillis;
+    private final long maxPlayouts;
+    private final AtomicLong playouts;
+    private final Worker[] workers;
+    private final ExecutorService pool;
+    private final ExecutorService ponderer;
+    private Future<?> pondering;
+    private long playoutLimit;
+    private Tree tree;
+    private Tree spare;
+    private Board root;
+    private Marble rootMarble;
+    //the limits of the running search or pondering, cancelled by cancel
+    private volatile SearchLimits limits;
+    private volatile boolean stopped;
+    private long lastPlayouts;
+    private double lastPlayoutsPerSecond;
+    private int lastReusedNodes;
+    private OpeningBook book;
+
+    /**
+     * Creates the strategy with the default thinking time per move, no playout limit,
+     * one thread per available processor and the default tree capacity. The two trees
+     * of that capacity take about 46 MB, a strategy that shares the machine with other
+     * work is better made with fewer threads and a smaller capacity.
+     */
+    public MctsStrategy() {
+        this(DEFAULT_TIME, 0, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates the strategy with the given budget and number of threads.
+     *
+     * @param timeMillis  the time in milliseconds the strategy may think per move
+     * @param maxPlayouts the number of playouts per move, or 0 for no limit
+     * @param threads     the number of threads running playouts
+     */
+    public MctsStrategy(long timeMillis, long maxPlayouts, int threads) {
+        this(timeMillis, maxPlayouts, threads, DEFAULT_CAPACITY, System.nanoTime());
+    }
+
+    /**
+     * Creates the strategy with the given budget, number of threads, tree capacity and seed.
+     *
+     * @param timeMillis  the time in milliseconds the strategy may think per move
+     * @param maxPlayouts the number of playouts per move, or 0 for no limit
+     * @param threads     the number of threads running playouts
+     * @param capacity    the maximum number of nodes of the tree, memory for twice
+     *                    this number is used to copy the tree between moves
+     * @param seed        the seed of the playout engines of the threads
+     */
+    //@ requires threads >= 1 && capacity > Move.COUNT;
+    public MctsStrategy(long timeMillis, long maxPlayouts, int threads, int capacity, long seed) {
+        this.timeMillis = timeMillis;
+        this.maxPlayouts = maxPlayouts;
+        tree = new Tree(capacity);
+        spare = new Tree(capacity);
+        playouts = new AtomicLong();
+        Playout engines = new Playout(seed);
+        workers = new Worker[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(engines.split());
+        }
+        if (workers.length > 1) {
+            pool = Executors.newFixedThreadPool(workers.length - 1, runnable -> {
+                Thread thread = new Thread(runnable, "mcts-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            pool = null;
+        }
+        ponderer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mcts-ponder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        book = OpeningBook.getDefault();
+    }
+
+    /**
+     * Determines a move with Monte Carlo tree search. Playouts are run on all threads
+     * until the time or the playout budget is used up, and the most visited move of
+     * the root is returned. If the board is a position of the tree of the previous
+     * search, at most two plies further, the search continues with that subtree.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @return the most visited move, or null if the game is over
+     */
+    @Override
+    public Move determineMove(Board board, Marble marble) {
+        SearchLimits limits = SearchLimits.moveTime(timeMillis);
+        return determineMove(board, marble,
+                maxPlayouts > 0 ? limits.withNodes(maxPlayouts) : limits);
+    }
+
+    /**
+     * Determines a move like determineMove, but runs playouts until the deadline or the
+     * node budget of the limits is reached, where a node is one playout. When the search
+     * is cancelled the most visited move so far is returned. Positions of the opening
+     * book are not searched, the best book move is played at once.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @param limits the deadline and playout budget of the search
+     * @return the most visited move, or null if the game is over
+     */
+    @Override
+    public synchronized Move determineMove(Board board, Marble marble, SearchLimits limits) {
+        stopPondering();
+        if (board.gameOver()) {
+            return null;
+        }
+        Move bookMove = book == null ? null : book.bestMove(board, marble);
+        if (bookMove != null) {
+            return bookMove;
+        }
+        setRoot(board, marble);
+        playoutLimit = limits.getNodes();
+        this.limits = limits;
+        stopped = false;
+        long start = System.nanoTime();
+        runWorkers();
+
+        lastPlayouts = playouts.get();
+        lastPlayoutsPerSecond = lastPlayouts / Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        return Move.of(bestMove());
+    }
+
+    /**
+     * Runs playouts from the opponent's position in the background until stopPondering
+     * is called. The children of the root are the opponent's moves, so after the
+     * opponent has moved the next determineMove continues with the subtree of that move.
+     *
+     * @param board  the board after our move, it is not changed
+     * @param marble the marble of the opponent, who is to move on the board
+     */
+    @Override
+    public synchronized void ponder(Board board, Marble marble) {
+        stopPondering();
+        if (board.gameOver()) {
+            return;
+        }
+        setRoot(board, marble);
+        playoutLimit = Long.MAX_VALUE;
+        stopped = false;
+        limits = SearchLimits.none();
+        pondering = ponderer.submit(this::runWorkers);
+    }
+
+    /**
+     * Stops the running search, which then returns the most visited move so far,
+     * or the pondering.
+     */
+    @Override
+    public void cancel() {
+        SearchLimits running = limits;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    /**
+     * Stops the background playouts and waits until all threads have ended.
+     */
+    @Override
+    public synchronized void stopPondering() {
+        if (pondering == null) {
+            return;
+        }
+        stopped = true;
+        try {
+            pondering.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        pondering = null;
+    }
+
+    /**
+     * Stops the pondering and shuts down the worker and ponder threads.
+     */
+    @Override
+    public synchronized void close() {
+        stopPondering();
+        if (pool != null) {
+            pool.shutdown();
+        }
+        ponderer.shutdown();
+    }
+
+    /**
+     * Makes the board the root of the tree, keeping the subtree of the board
+     * if the tree has a node with that position.
+     *
+     * @param board  the board of the new search
+     * @param marble the marble to move
+     */
+    private void setRoot(Board board, Marble marble) {
+        int node = findNode(board, marble);
+        if (node < 0) {
+            tree.size.set(1);
+            tree.initNode(0, 0);
+        } else if (node > 0) {
+            spare.copySubtree(tree, node);
+            Tree old = tree;
+            tree = spare;
+            spare = old;
+        }
+        lastReusedNodes = node < 0 ? 0 : tree.size();
+        root = board.copy();
+        rootMarble = marble;
+        playouts.set(0);
+    }
+
+    /**
+     * Runs the first worker on the calling thread and the others on the pool,
+     * and waits until all of them have stopped.
+     */
+    private void runWorkers() {
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 1; i < workers.length; i++) {
+            results.add(pool.submit(workers[i]));
+        }
+        workers[0].run();
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns the node of the tree whose position is the board with the marble to move.
+     *
+     * @param board  the board of the new search
+     * @param marble the marble to move
+     * @return the index of the node, or -1 if the tree has no such node
+     */
+    private int findNode(Board board, Marble marble) {
+        if (root == null) {
+            return -1;
+        }
+        int distance = board.getPlies() - root.getPlies();
+        if (distance < 0 || distance > 2 || (distance % 2 == 0) != (marble == rootMarble)) {
+            return -1;
+        }
+        return findNode(root.copy(), 0, rootMarble, distance, board);
+    }
+
+    /**
+     * Searches the subtree of a node for the node with the position of the target board.
+     *
+     * @param current  the board of the node, it is restored before returning
+     * @param node     the index of the node
+     * @param toMove   the marble to move in the node
+     * @param distance the number of plies between the node and the target
+     * @param target   the board we look for
+     * @return the index of the node with the target position, or -1 if there is none
+     */
+    private int findNode(Board current, int node, Marble toMove, int distance, Board target) {
+        if (distance == 0) {
+            boolean same = current.bits(Marble.BLACK) == target.bits(Marble.BLACK)
+                    && current.bits(Marble.WHITE) == target.bits(Marble.WHITE);
+            return same ? node : -1;
+        }
+        int first = tree.firstChild[node];
+        if (first < 0) {
+            return -1;
+        }
+        for (int c = first; c < first + tree.childCount[node]; c++) {
+            int move = tree.moves[c];
+            current.makeMove(Move.index(move), Move.rotation(move), toMove);
+            int found = findNode(current, c, toMove.other(), distance - 1, target);
+            current.unmakeMove(Move.index(move), Move.rotation(move));
+            if (found >= 0) {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the move of the most visited child of the root.
+     *
+     * @return the code of the move
+     */
+    private int bestMove() {
+        int first = tree.firstChild[0];
+        if (first < 0) {
+            //no playout was finished, so any legal move will do
+            MoveList list = new MoveList();
+            new MoveGenerator().generate(root.copy(), rootMarble, list);
+            return list.get(0);
+        }
+        int best = first;
+        for (int c = first; c < first + tree.childCount[0]; c++) {
+            if (tree.visits[c] > tree.visits[best]) {
+                best = c;
+            }
+        }
+        return tree.moves[best];
+    }
+
+    /**
+     * Sets the opening book the strategy consults before searching. By default this is
+     * the book named by the system property pentago.book.
+     *
+     * @param book the opening book, or null to search every move
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Returns the number of playouts of the last move.
+     *
+     * @return the number of playouts
+     */
+    public long getLastPlayouts() {
+        return lastPlayouts;
+    }
+
+    /**
+     * Returns the number of playouts per second of the last move, over all threads.
+     *
+     * @return the playout rate
+     */
+    public double getLastPlayoutsPerSecond() {
+        return lastPlayoutsPerSecond;
+    }
+
+    /**
+     * Returns the number of nodes of the tree built for the last move.
+     *
+     * @return the number of nodes
+     */
+    public int getLastNodes() {
+        return tree.size();
+    }
+
+    /**
+     * Returns the number of nodes kept from the tree of the previous move.
+     *
+     * @return the number of reused nodes, 0 if the search started with an empty tree
+     */
+    public int getLastReusedNodes() {
+        return lastReusedNodes;
+    }
+
+    private static class Tree {
+        private final int[] firstChild;
+        private final int[] childCount;
+        private final int[] visits;
+        private final long[] rewards;
+        private final char[] moves;
+        private final AtomicInteger size;
+
+        /**
+         * Creates the arrays of a tree with the given number of nodes.
+         *
+         * @param capacity the maximum number of nodes
+         */
+        Tree(int capacity) {
+            firstChild = new int[capacity];
+            childCount = new int[capacity];
+            visits = new int[capacity];
+            rewards = new long[capacity];
+            moves = new char[capacity];
+            size = new AtomicInteger();
+        }
+
+        /**
+         * Returns the number of nodes in use. Allocations that did not fit are not counted.
+         *
+         * @return the number of nodes
+         */
+        int size() {
+            return Math.min(size.get(), visits.length);
+        }
+
+        /**
+         * Clears the statistics of a node.
+         *
+         * @param node the index of the node
+         * @param move the code of the move leading to the node
+         */
+        void initNode(int node, int move) {
+            moves[node] = (char) move;
+            visits[node] = 0;
+            rewards[node] = 0;
+            childCount[node] = 0;
+            INTS.setRelease(firstChild, node, UNEXPANDED);
+        }
+
+        /**
+         * Replaces this tree with a copy of the subtree of a node of another tree. The nodes
+         * are copied in breadth first order, so every block of children stays contiguous.
+         * Until a copied node is visited, its firstChild holds its index in the other tree.
+         *
+         * @param other the tree that is copied from
+         * @param node  the index of the node that becomes the root
+         */
+        void copySubtree(Tree other, int node) {
+            copyNode(other, node, 0);
+            firstChild[0] = node;
+            int end = 1;
+            for (int n = 0; n < end; n++) {
+                int source = firstChild[n];
+                int first = other.firstChild[source];
+                if (first < 0) {
+                    firstChild[n] = UNEXPANDED;
+                    continue;
+                }
+                firstChild[n] = end;
+                for (int c = first; c < first + other.childCount[source]; c++) {
+                    copyNode(other, c, end);
+                    firstChild[end++] = c;
+                }
+            }
+            size.set(end);
+        }
+
+        /**
+         * Copies the statistics of a node of another tree.
+         *
+         * @param other  the tree that is copied from
+         * @param source the index of the node in the other tree
+         * @param target the index of the node in this tree
+         */
+        private void copyNode(Tree other, int source, int target) {
+            moves[target] = other.moves[source];
+            visits[target] = other.visits[source];
+            rewards[target] = other.rewards[source];
+            childCount[target] = other.childCount[source];
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final Playout playout;
+        private final MoveGenerator generator;
+        private final MoveList list;
+        private final int[] path;
+        private Board rootCopy;
+        private Board board;
+
+        /**
+         * Creates a worker with its own playout engine and buffers.
+         *
+         * @param playout the playout engine of the worker
+         */
+        Worker(Playout playout) {
+            this.playout = playout;
+            generator = new MoveGenerator();
+            list = new MoveList();
+            path = new int[Searcher.MAX_PLY + 1];
+        }
+
+        /**
+         * Runs playouts until the budget of the current move is used up.
+         */
+        @Override
+        public void run() {
+            rootCopy = root.copy();
+            board = root.copy();
+            long count = 0;
+            while (!stopped) {
+                if (playouts.incrementAndGet() > playoutLimit) {
+                    playouts.decrementAndGet();
+                    stopped = true;
+                    break;
+                }
+                playout();
+                if ((++count & TIME_CHECK_INTERVAL) == 0 && limits.isExpired()) {
+                    stopped = true;
+                }
+            }
+        }
+
+        /**
+         * Walks down the tree to a leaf, expands it when it was visited often enough,
+         * finishes the game with a random playout and updates the nodes of the path.
+         */
+        private void playout() {
+            int depth = 0;
+            int node = 0;
+            Marble toMove = rootMarble;
+            path[0] = 0;
+            INTS.getAndAdd(tree.visits, 0, VIRTUAL_LOSS);
+            while (!board.gameOver()) {
+                int first = (int) INTS.getAcquire(tree.firstChild, node);
+                if (first < 0) {
+                    if (first == UNEXPANDED
+                            && (node == 0
+                            || (int) INTS.getOpaque(tree.visits, node) >= EXPAND_VISITS)
+                            && INTS.compareAndSet(tree.firstChild, node, UNEXPANDED, EXPANDING)) {
+                        first = expand(node, toMove);
+                    }
+                    if (first < 0) {
+                        break;
+                    }
+                }
+                node = select(node, first);
+                INTS.getAndAdd(tree.visits, node, VIRTUAL_LOSS);
+                int move = tree.moves[node];
+                board.makeMove(Move.index(move), Move.rotation(move), toMove);
+                path[++depth] = node;
+                toMove = toMove.other();
+            }
+
+            Marble winner = playout.play(board, toMove);
+            board.copyFrom(rootCopy);
+
+            Marble mover = rootMarble.other();
+            for (int i = 0; i <= depth; i++) {
+                INTS.getAndAdd(tree.visits, path[i], 1 - VIRTUAL_LOSS);
+                if (i > 0) {
+                    int reward = winner == mover ? 2 : winner == Marble.EMPTY ? 1 : 0;
+                    LONGS.getAndAdd(tree.rewards, path[i], (long) reward);
+                }
+                mover = mover.other();
+            }
+        }
+
+        /**
+         * Creates the children of the node, one for every move leading to a distinct position.
+         *
+         * @param node   the node we expand
+         * @param toMove the marble to move in the node
+         * @return the index of the first child, or NOT_EXPANDABLE if the tree is full
+         */
+        private int expand(int node, Marble toMove) {
+            int count = generator.generate(board, toMove, list);
+            int first = tree.size.getAndAdd(count);
+            if (first + count > tree.visits.length) {
+                INTS.setRelease(tree.firstChild, node, NOT_EXPANDABLE);
+                return NOT_EXPANDABLE;
+            }
+            for (int i = 0; i < count; i++) {
+                tree.initNode(first + i, list.get(i));
+            }
+            tree.childCount[node] = count;
+            INTS.setRelease(tree.firstChild, node, first);
+            return first;
+        }
+
+        /**
+         * Selects the child with the highest upper confidence bound. A child
+         * that was never visited is always selected first.
+         *
+         * @param node  the node we select a child of
+         * @param first the index of the first child
+         * @return the index of the selected child
+         */
+        private int select(int node, int first) {
+            double logVisits = Math.log(Math.max(1, (int) INTS.getOpaque(tree.visits, node)));
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int c = first; c < first + tree.childCount[node]; c++) {
+                int n = (int) INTS.getOpaque(tree.visits, c);
+                if (n == 0) {
+                    return c;
+                }
+                double value = (long) LONGS.getOpaque(tree.rewards, c) / (2.0 * n)
+                        + EXPLORATION * Math.sqrt(logVisits / n);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package ai;
 
 public class Move {
-    private int index;
-    private int rotation;
+    //A move is also encoded as a single int, index * 8 + rotation, so search code can
+    //keep moves in primitive arrays. The 288 possible moves are created once and shared.
+    public static final int COUNT = 36 * 8;
+    private static final Move[] MOVES = createMoves();
+
+    private final int index;
+    private final int rotation;
 
     /**
      * Constructor of the class that sets the index and the rotation.
@@ -15,6 +20,108 @@ public class Move {
         this.rotation = rotation;
     }
 
+    /**
+     * Creates the shared instance of every move.
+     *
+     * @return the moves indexed by their code
+     */
+    private static Move[] createMoves() {
+        Move[] moves = new Move[COUNT];
+        for (int code = 0; code < COUNT; code++) {
+            moves[code] = new Move(index(code), rotation(code));
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the shared instance of the move with the given index and rotation.
+     *
+     * @param index    the index of the board
+     * @param rotation the rotation that can be applied to a board
+     * @return the move, or null if the index or the rotation is not valid
+     */
+    public static Move of(int index, int rotation) {
+        if (index < 0 || index >= 36 || rotation < 0 || rotation >= 8) {
+            return null;
+        }
+        return MOVES[encode(index, rotation)];
+    }
+
+    /**
+     * Returns the shared instance of the move with the given code.
+     *
+     * @param code the code of the move
+     * @return the move, or null if the code is not valid
+     */
+    public static Move of(int code) {
+        if (code < 0 || code >= COUNT) {
+            return null;
+        }
+        return MOVES[code];
+    }
+
+    /**
+     * Encodes the index and the rotation of a move into a single int.
+     *
+     * @param index    the index of the board
+     * @param rotation the rotation that can be applied to a board
+     * @return the code of the move
+     */
+    //@ ensures \result == index * 8 + rotation;
+    public static int encode(int index, int rotation) {
+        return (index << 3) | rotation;
+    }
+
+    /**
+     * Returns the index of the move with the given code.
+     *
+     * @param code the code of the move
+     * @return the index of the board
+     */
+    public static int index(int code) {
+        return code >>> 3;
+    }
+
+    /**
+     * Returns the rotation of the move with the given code.
+     *
+     * @param code the code of the move
+     * @return the rotation of the move
+     */
+    public static int rotation(int code) {
+        return code & 7;
+    }
+
+    /**
+     * Parses a move in the protocol's form MOVE~index~rotation.
+     *
+     * @param line the line received from the server
+     * @return the move, or null if the line is not a valid move
+     */
+    public static Move fromProtocol(String line) {
+        if (line == null) {
+            return null;
+        }
+        String[] lines = line.split("~");
+        if (lines.length != 3 || !lines[0].equals("MOVE")) {
+            return null;
+        }
+        try {
+            return of(Integer.parseInt(lines[1]), Integer.parseInt(lines[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the move in the protocol's form MOVE~index~rotation.
+     *
+     * @return the protocol message of the move
+     */
+    public String toProtocol() {
+        return "MOVE~" + index + "~" + rotation;
+    }
+
     /**
      * Returns the index field.
      *
@@ -32,4 +139,41 @@ public class Move {
     public int getRotation() {
         return rotation;
     }
+
+    /**
+     * Returns the code of the move.
+     *
+     * @return index * 8 + rotation
+     */
+    public int getCode() {
+        return encode(index, rotation);
+    }
+
+    /**
+     * Checks whether the object is a move with the same index and rotation.
+     *
+     * @param o the object we compare with
+     * @return whether both moves are the same
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Move)) {
+            return false;
+        }
+        Move move = (Move) o;
+        return index == move.index && rotation == move.rotation;
+    }
+
+    /**
+     * Returns the hash code of the move, which is its code.
+     *
+     * @return the hash code of the move
+     */
+    @Override
+    public int hashCode() {
+        return getCode();
+    }
 }
@@ -0,0 +1,112 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+import java.util.Arrays;
+
+public class MoveGenerator {
+    //Moves are written to the list as codes, see Move.encode.
+    //The resulting positions are stored in a small open addressing table, a slot is
+    //in use when its stamp equals the stamp of the current call, so the table never
+    //has to be cleared between calls.
+    private static final int TABLE_SIZE = 1024;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+    private final long[] blackPositions;
+    private final long[] whitePositions;
+    private final int[] stamps;
+    private int stamp;
+    private int pruned;
+
+    /**
+     * Creates a generator with its own reusable table of generated positions.
+     */
+    public MoveGenerator() {
+        blackPositions = new long[TABLE_SIZE];
+        whitePositions = new long[TABLE_SIZE];
+        stamps = new int[TABLE_SIZE];
+        stamp = 0;
+    }
+
+    /**
+     * Fills the list with the legal moves of the marble that lead to distinct positions.
+     * Moves that give the same position as an earlier move, like rotating an empty subboard
+     * or both directions of a subboard that is symmetric under a half turn, are skipped.
+     * The board is changed while generating but is restored before the method returns.
+     *
+     * @param board  the board we generate the moves for
+     * @param marble the marble that is placed by the moves
+     * @param moves  the list the moves are written to, it is cleared first
+     * @return the number of moves written to the list
+     */
+    /*@ requires board != null && marble != Marble.EMPTY && moves.capacity() >= Move.COUNT;
+        ensures \result == moves.size();
+    @*/
+    public int generate(Board board, Marble marble, MoveList moves) {
+        nextStamp();
+        pruned = 0;
+        moves.clear();
+        long empty = board.bits(Marble.EMPTY);
+        while (empty != 0) {
+            int field = Long.numberOfTrailingZeros(empty);
+            empty &= empty - 1;
+            for (int rotation = 0; rotation < 8; rotation++) {
+                board.makeMove(field, rotation, marble);
+                boolean added = add(board.hash(), board.bits(Marble.BLACK),
+                        board.bits(Marble.WHITE));
+                board.unmakeMove(field, rotation);
+                if (added) {
+                    moves.add(Move.encode(field, rotation));
+                } else {
+                    pruned++;
+                }
+            }
+        }
+        return moves.size();
+    }
+
+    /**
+     * Returns how many legal moves the last call of generate skipped because
+     * they lead to a position that was already generated.
+     *
+     * @return the number of pruned duplicate moves
+     */
+    public int getPruned() {
+        return pruned;
+    }
+
+    /**
+     * Starts a new generation, which empties the table of generated positions.
+     */
+    private void nextStamp() {
+        stamp++;
+        if (stamp == 0) {
+            //the stamps wrapped around, so old slots could look used again
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Adds the position to the table of generated positions.
+     *
+     * @param hash  the hash of the position
+     * @param black the bitboard of the black marbles
+     * @param white the bitboard of the white marbles
+     * @return whether the position was not in the table yet
+     */
+    private boolean add(long hash, long black, long white) {
+        int slot = (int) hash & TABLE_MASK;
+        while (stamps[slot] == stamp) {
+            if (blackPositions[slot] == black && whitePositions[slot] == white) {
+                return false;
+            }
+            slot = (slot + 1) & TABLE_MASK;
+        }
+        stamps[slot] = stamp;
+        blackPositions[slot] = black;
+        whitePositions[slot] = white;
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+package ai;
+
+public class MoveList {
+    private final int[] moves;
+    private int size;
+
+    /**
+     * Creates an empty list that can hold every possible move.
+     */
+    public MoveList() {
+        this(Move.COUNT);
+    }
+
+    /**
+     * Creates an empty list with the given capacity.
+     *
+     * @param capacity the maximum number of moves in the list
+     */
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+        size = 0;
+    }
+
+    /**
+     * Adds the move with the given code at the end of the list.
+     *
+     * @param move the code of the move
+     */
+    //@ requires size() < capacity();
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    /**
+     * Returns the code of the move at the given position.
+     *
+     * @param i the position in the list
+     * @return the code of the move
+     */
+    //@ requires i >= 0 && i < size();
+    public int get(int i) {
+        return moves[i];
+    }
+
+    /**
+     * Replaces the move at the given position.
+     *
+     * @param i    the position in the list
+     * @param move the code of the new move
+     */
+    //@ requires i >= 0 && i < size();
+    public void set(int i, int move) {
+        moves[i] = move;
+    }
+
+    /**
+     * Swaps the moves at the given positions.
+     *
+     * @param i the position of the first move
+     * @param j the position of the second move
+     */
+    public void swap(int i, int j) {
+        int temp = moves[i];
+        moves[i] = moves[j];
+        moves[j] = temp;
+    }
+
+    /**
+     * Returns the position of the move in the list.
+     *
+     * @param move the code of the move
+     * @return the position of the move, or -1 if it is not in the list
+     */
+    public int indexOf(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of moves in the list.
+     *
+     * @return the size of the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of moves in the list.
+     *
+     * @return the capacity of the list
+     */
+    public int capacity() {
+        return moves.length;
+    }
+
+    /**
+     * Checks whether the list has no moves.
+     *
+     * @return whether the list is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all moves from the list, without freeing any memory.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
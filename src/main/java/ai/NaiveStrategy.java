@@ -3,30 +3,39 @@ package ai;
 import game.Board;
 import game.Marble;
 
-import java.util.Random;
-
 public class NaiveStrategy implements Strategy {
+    private final Playout playout;
+
+    /**
+     * Creates the strategy with a random generator seeded from the clock.
+     */
+    public NaiveStrategy() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * Creates the strategy with a random generator with the given seed,
+     * so the same seed gives the same moves.
+     *
+     * @param seed the seed of the random generator
+     */
+    public NaiveStrategy(long seed) {
+        playout = new Playout(seed);
+    }
+
     /**
-     * Determines a random move by generating random numbers for the index and rotation
-     * and then checking the validity.
+     * Determines a random move by choosing a random empty field and a random rotation.
      *
      * @param board  the board on which the game takes place
      * @param marble the marble for which we generate the move
-     * @return a random generated move for the marble
+     * @return a random generated move for the marble, or null if the game is over
      */
     @Override
-    public Move determineMove(Board board, Marble marble) {
-        int n1 = new Random().nextInt(36);
-        int n2 = new Random().nextInt(8);
-        while (!board.checkMove(n1, n2)) {
-            if (!board.gameOver()) {
-                n1 = new Random().nextInt(36);
-                n2 = new Random().nextInt(8);
-            } else {
-                return null;
-            }
+    public synchronized Move determineMove(Board board, Marble marble) {
+        if (board.gameOver()) {
+            return null;
         }
-        return new Move(n1, n2);
+        return Move.of(playout.randomMove(board));
     }
 
 }
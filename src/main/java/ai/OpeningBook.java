@@ -0,0 +1,216 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+import game.Symmetry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class OpeningBook {
+    //A book file starts with a header of four ints: MAGIC, VERSION, the number of entries
+    //and the number of plies the book covers. It is followed by the entries, sorted by key
+    //as unsigned longs. An entry takes ENTRY_BYTES:
+    //bytes 0-7    key, the hash of the canonical form of the position
+    //bytes 8-9    code of the move on the canonical board
+    //bytes 10-11  depth of the search that chose the move
+    //bytes 12-15  score of the move for the marble to move
+    //A position has up to OpeningBookGenerator.BOOK_MOVES entries, the best move comes first
+    //and the others follow by decreasing score.
+    public static final String PROPERTY = "pentago.book";
+    static final int MAGIC = 0x50424B31;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 16;
+    private static OpeningBook defaultBook;
+    private static boolean defaultLoaded;
+    private static IOException defaultError;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int plies;
+
+    /**
+     * Maps the book file into memory and checks its header.
+     *
+     * @param path the path of the book file
+     * @throws IOException if the file cannot be read or is not a valid book
+     */
+    public OpeningBook(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid opening book size: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book of version " + VERSION + ": " + path);
+        }
+        count = buffer.getInt(8);
+        plies = buffer.getInt(12);
+        if (count < 0 || buffer.capacity() != HEADER_BYTES + (long) count * ENTRY_BYTES) {
+            throw new IOException("Truncated opening book: " + path);
+        }
+    }
+
+    /**
+     * Returns the book named by the system property pentago.book, opened once and shared
+     * by all strategies. Returns null if the property is not set or the file is not a
+     * valid book, in which case the strategies search every move. Why the file could not
+     * be used is kept for getDefaultError.
+     *
+     * @return the default book, or null
+     */
+    public static synchronized OpeningBook getDefault() {
+        if (!defaultLoaded) {
+            defaultLoaded = true;
+            String file = System.getProperty(PROPERTY);
+            if (file != null) {
+                try {
+                    defaultBook = new OpeningBook(Paths.get(file));
+                } catch (IOException e) {
+                    defaultError = e;
+                }
+            }
+        }
+        return defaultBook;
+    }
+
+    /**
+     * Returns why the book named by the system property pentago.book could not be opened.
+     * The book is opened first if that was not done yet.
+     *
+     * @return the error, or null if the book was opened or the property is not set
+     */
+    public static synchronized IOException getDefaultError() {
+        getDefault();
+        return defaultError;
+    }
+
+    /**
+     * Looks up the moves of the position in the book. The moves are mapped back from the
+     * canonical board to the given board. Black moves first, so the book only has moves
+     * for the marble whose turn it is.
+     *
+     * @param board  the board we look up
+     * @param marble the marble to move
+     * @param moves  the list the moves are written to, best move first
+     * @param scores the array the score of every move is written to, or null
+     * @return the number of moves found
+     */
+    public int probe(Board board, Marble marble, MoveList moves, int[] scores) {
+        moves.clear();
+        if (board.getPlies() > plies || marble != toMove(board)) {
+            return 0;
+        }
+        int symmetry = Symmetry.canonicalSymmetry(board);
+        long key = Symmetry.transform(board, symmetry).hash();
+        int inverse = Symmetry.inverse(symmetry);
+        for (int i = lowerBound(key); i < count && keyAt(i) == key; i++) {
+            int position = HEADER_BYTES + i * ENTRY_BYTES;
+            int move = buffer.getShort(position + 8);
+            int field = Symmetry.transformField(inverse, Move.index(move));
+            int rotate = Symmetry.transformRotation(inverse, Move.rotation(move));
+            //a different position with the same key must not give an illegal move
+            if (board.checkMove(field, rotate) && moves.size() < moves.capacity()) {
+                if (scores != null && moves.size() < scores.length) {
+                    scores[moves.size()] = buffer.getInt(position + 12);
+                }
+                moves.add(Move.encode(field, rotate));
+            }
+        }
+        return moves.size();
+    }
+
+    /**
+     * Returns the best book move of the position.
+     *
+     * @param board  the board we look up
+     * @param marble the marble to move
+     * @return the best move, or null if the position is not in the book
+     */
+    public Move bestMove(Board board, Marble marble) {
+        MoveList moves = new MoveList();
+        return probe(board, marble, moves, null) > 0 ? Move.of(moves.get(0)) : null;
+    }
+
+    /**
+     * Returns the index of the first entry whose key is not smaller than the given key.
+     *
+     * @param key the key we search
+     * @return the index of the entry, or the number of entries if all keys are smaller
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the key of an entry.
+     *
+     * @param index the index of the entry
+     * @return the key stored in the entry
+     */
+    private long keyAt(int index) {
+        return buffer.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    /**
+     * Writes an entry in the format of the book file.
+     *
+     * @param buffer the buffer the entry is written to
+     * @param key    the hash of the canonical form of the position
+     * @param move   the code of the move on the canonical board
+     * @param depth  the depth of the search that chose the move
+     * @param score  the score of the move
+     */
+    static void putEntry(ByteBuffer buffer, long key, int move, int depth, int score) {
+        buffer.putLong(key);
+        buffer.putShort((short) move);
+        buffer.putShort((short) depth);
+        buffer.putInt(score);
+    }
+
+    /**
+     * Returns the number of entries in the book.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the number of plies the book covers.
+     *
+     * @return the largest number of marbles on a board in the book
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Returns the marble to move in a position, black moves first.
+     *
+     * @param board the board of the position
+     * @return the marble to move
+     */
+    static Marble toMove(Board board) {
+        return board.getPlies() % 2 == 0 ? Marble.BLACK : Marble.WHITE;
+    }
+}
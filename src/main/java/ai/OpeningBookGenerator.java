@@ -0,0 +1,335 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+import game.Symmetry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class OpeningBookGenerator {
+    //Besides the best move, the book keeps the next best moves of a position. They are
+    //found as in a multi-PV search: every other root move is searched to the depth of the
+    //best move, with the score of the worst move kept so far as alpha once the list is
+    //full, so only the moves that make the list get an exact score. Moves that lead to
+    //the same position up to symmetry are searched and kept once.
+    private static final int TABLE_MEGABYTES = 16;
+    static final int BOOK_MOVES = 4;
+
+    private final int plies;
+    private final long timeMillis;
+    private final int depth;
+    private final int threads;
+    private final Map<Long, List<long[]>> results;
+    private DataOutputStream checkpoint;
+
+    /**
+     * Creates a generator for the positions up to the given number of plies.
+     *
+     * @param plies      the largest number of marbles on a board in the book
+     * @param timeMillis the time in milliseconds searched per position
+     * @param depth      the deepest iteration searched per position
+     * @param threads    the number of positions searched at the same time
+     */
+    public OpeningBookGenerator(int plies, long timeMillis, int depth, int threads) {
+        this.plies = plies;
+        this.timeMillis = timeMillis;
+        this.depth = depth;
+        this.threads = threads;
+        results = new HashMap<>();
+    }
+
+    /**
+     * Generates an opening book. Arguments: the book file, the number of plies (default 2),
+     * the time per position in milliseconds (default 1000), the depth (default 4) and the
+     * number of threads (default: number of processors). Every searched position is
+     * appended to the file with the extension .part, and a generator started again with
+     * the same book file skips the positions found there.
+     *
+     * @param args the book file followed by the optional arguments
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("Usage: OpeningBookGenerator book [plies] [time] [depth] [threads]");
+            return;
+        }
+        Path book = Paths.get(args[0]);
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        long time = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+        new OpeningBookGenerator(plies, time, depth, threads).generate(book);
+    }
+
+    /**
+     * Searches every position of the book that is not in the checkpoint yet
+     * and writes the book file.
+     *
+     * @param book the path of the book file
+     * @throws IOException if the checkpoint or the book cannot be written
+     */
+    public void generate(Path book) throws IOException, InterruptedException {
+        Path part = Paths.get(book + ".part");
+        readCheckpoint(part);
+        List<Board> positions = new ArrayList<>();
+        for (Board board : enumerate(plies)) {
+            if (!results.containsKey(board.hash())) {
+                positions.add(board);
+            }
+        }
+        System.out.println(results.size() + " positions in the checkpoint, "
+                + positions.size() + " to search");
+
+        checkpoint = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(part,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<AlphaBetaStrategy> strategies = ThreadLocal.withInitial(() -> {
+            AlphaBetaStrategy strategy = new AlphaBetaStrategy(timeMillis, depth,
+                    new TranspositionTable(TABLE_MEGABYTES));
+            strategy.setOpeningBook(null);
+            return strategy;
+        });
+        ThreadLocal<Searcher> searchers =
+                ThreadLocal.withInitial(() -> new Searcher(strategies.get().getTable(), 0));
+        List<Future<?>> tasks = new ArrayList<>();
+        for (Board board : positions) {
+            tasks.add(pool.submit(() -> search(strategies.get(), searchers.get(), board)));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Search failed", e.getCause());
+        } finally {
+            pool.shutdown();
+            synchronized (this) {
+                checkpoint.close();
+            }
+        }
+        write(book);
+        System.out.println("Wrote " + results.size() + " positions to " + book);
+    }
+
+    /**
+     * Searches a canonical position and stores its best moves in the checkpoint.
+     *
+     * @param strategy the strategy of the thread
+     * @param searcher the searcher of the thread, sharing the table of the strategy
+     * @param board    the canonical board of the position
+     */
+    private void search(AlphaBetaStrategy strategy, Searcher searcher, Board board) {
+        Marble marble = OpeningBook.toMove(board);
+        Move move = strategy.determineMove(board, marble);
+        if (move == null) {
+            return;
+        }
+        int searched = strategy.getLastDepth();
+        List<long[]> entries = new ArrayList<>();
+        entries.add(new long[]{move.getCode(), searched, strategy.getLastScore()});
+        if (searched > 0) {
+            addAlternatives(searcher, board, marble, move.getCode(), searched, entries);
+        }
+        synchronized (this) {
+            results.put(board.hash(), entries);
+            try {
+                for (long[] entry : entries) {
+                    checkpoint.writeLong(board.hash());
+                    checkpoint.writeShort((int) entry[0]);
+                    checkpoint.writeShort((int) entry[1]);
+                    checkpoint.writeInt((int) entry[2]);
+                }
+                checkpoint.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not write the checkpoint", e);
+            }
+            if (results.size() % 100 == 0) {
+                System.out.println(results.size() + " positions searched");
+            }
+        }
+    }
+
+    /**
+     * Adds the next best moves after the best move to the entries, best first. The moves
+     * searched before the time per position runs out are used.
+     *
+     * @param searcher the searcher of the thread
+     * @param board    the canonical board of the position
+     * @param marble   the marble to move
+     * @param best     the code of the best move
+     * @param depth    the depth the best move was searched to
+     * @param entries  the entries of the position, holding the best move
+     */
+    private void addAlternatives(Searcher searcher, Board board, Marble marble, int best,
+                                 int depth, List<long[]> entries) {
+        MoveList moves = new MoveList();
+        new MoveGenerator().generate(board, marble, moves);
+        Set<Long> seen = new HashSet<>();
+        seen.add(canonicalChild(board, best, marble));
+        List<long[]> others = new ArrayList<>();
+        SearchLimits limits = SearchLimits.moveTime(timeMillis);
+        searcher.prepare();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (!seen.add(canonicalChild(board, move, marble))) {
+                continue;
+            }
+            int alpha = others.size() < BOOK_MOVES - 1 ? -Searcher.INFINITY
+                    : (int) others.get(others.size() - 1)[2];
+            int score = searcher.searchMove(board, marble, move, depth, alpha, limits);
+            if (searcher.isStopped()) {
+                break;
+            }
+            if (score > alpha) {
+                int at = 0;
+                while (at < others.size() && others.get(at)[2] >= score) {
+                    at++;
+                }
+                others.add(at, new long[]{move, depth, score});
+                if (others.size() >= BOOK_MOVES) {
+                    others.remove(others.size() - 1);
+                }
+            }
+        }
+        entries.addAll(others);
+    }
+
+    /**
+     * Returns the hash of the canonical form of the position after a move.
+     *
+     * @param board  the board of the position, it is restored before returning
+     * @param move   the code of the move
+     * @param marble the marble to move
+     * @return the hash of the canonical board after the move
+     */
+    private static long canonicalChild(Board board, int move, Marble marble) {
+        board.makeMove(Move.index(move), Move.rotation(move), marble);
+        long hash = Symmetry.canonical(board).hash();
+        board.unmakeMove(Move.index(move), Move.rotation(move));
+        return hash;
+    }
+
+    /**
+     * Reads the results of an earlier run. A record that was only partly written
+     * is cut off, so new records are appended at the right place.
+     *
+     * @param part the path of the checkpoint file
+     * @throws IOException if the checkpoint cannot be read
+     */
+    private void readCheckpoint(Path part) throws IOException {
+        if (!Files.exists(part)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            channel.truncate(size - size % OpeningBook.ENTRY_BYTES);
+        }
+        try (InputStream file = Files.newInputStream(part);
+             DataInputStream in = new DataInputStream(file)) {
+            while (true) {
+                long key = in.readLong();
+                long[] entry = {in.readShort(), in.readShort(), in.readInt()};
+                results.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
+            }
+        } catch (EOFException e) {
+            //all records were read
+        }
+    }
+
+    /**
+     * Writes the results as a book file. The file is written under a temporary
+     * name first, so a reader never sees a half written book.
+     *
+     * @param book the path of the book file
+     * @throws IOException if the book cannot be written
+     */
+    private void write(Path book) throws IOException {
+        List<Long> keys = new ArrayList<>(results.keySet());
+        keys.sort(Long::compareUnsigned);
+        int count = 0;
+        for (List<long[]> entries : results.values()) {
+            count += entries.size();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.HEADER_BYTES
+                + count * OpeningBook.ENTRY_BYTES);
+        buffer.putInt(OpeningBook.MAGIC);
+        buffer.putInt(OpeningBook.VERSION);
+        buffer.putInt(count);
+        buffer.putInt(plies);
+        for (long key : keys) {
+            for (long[] entry : results.get(key)) {
+                OpeningBook.putEntry(buffer, key, (int) entry[0], (int) entry[1],
+                        (int) entry[2]);
+            }
+        }
+        buffer.flip();
+        Path temporary = Paths.get(book + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            out.write(buffer.array(), 0, buffer.limit());
+        }
+        Files.move(temporary, book, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the canonical form of every position with at most the given number of
+     * marbles that can be reached from the empty board and is not decided yet.
+     *
+     * @param plies the largest number of marbles
+     * @return the canonical boards, each position once
+     */
+    static List<Board> enumerate(int plies) {
+        List<Board> positions = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        List<Board> level = new ArrayList<>();
+        level.add(new Board());
+        seen.add(new Board().hash());
+        MoveGenerator generator = new MoveGenerator();
+        MoveList moves = new MoveList();
+        for (int ply = 0; ply <= plies; ply++) {
+            positions.addAll(level);
+            if (ply == plies) {
+                break;
+            }
+            List<Board> next = new ArrayList<>();
+            for (Board board : level) {
+                Marble marble = OpeningBook.toMove(board);
+                generator.generate(board, marble, moves);
+                for (int i = 0; i < moves.size(); i++) {
+                    int move = moves.get(i);
+                    board.makeMove(Move.index(move), Move.rotation(move), marble);
+                    Board child = Symmetry.canonical(board);
+                    board.unmakeMove(Move.index(move), Move.rotation(move));
+                    if (!child.gameOver() && seen.add(child.hash())) {
+                        next.add(child);
+                    }
+                }
+            }
+            level = next;
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,337 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PatternEvaluator {
+    //Scores a board with lookup tables indexed by the contents of the 32 winning lines. The
+    //contents of a line are read as a number in base 3, digit i standing for the i-th field
+    //of the line: 0 for empty, 1 for black and 2 for white. The table values are the scores
+    //for black. The pattern of every line and the sum of their values are kept up to date by
+    //makeMove and unmakeMove, which only read again the lines a move can change.
+    //
+    //A weights file holds whitespace separated numbers, lines starting with # are comments.
+    //It gives the score of every pattern for the marble of digit 1, either PATTERNS numbers
+    //used for every line or WINNING_LINE_COUNT times PATTERNS numbers, one table per line.
+    //The score of a pattern for black is its value minus the value of the pattern with the
+    //colours swapped, so both marbles are scored alike.
+    public static final String PROPERTY = "pentago.weights";
+    public static final int PATTERNS = 243;
+    private static final int LINES = Board.WINNING_LINE_COUNT;
+    private static final int[] COUNT_WEIGHTS = {0, 1, 4, 16, 64, 0};
+    private static final int[] TERNARY = createTernary();
+    private static final long[] LINE_MASKS = createLineMasks();
+    private static int[][] defaultTables;
+    private static IOException defaultError;
+
+    private final int[][] tables;
+    private final int[] patterns;
+    private final int[] saved;
+    private final int[] savedScores;
+    private int score;
+    private int ply;
+
+    /**
+     * Creates an evaluator with the weights of the file named by the pentago.weights
+     * property, or with the built-in weights.
+     */
+    public PatternEvaluator() {
+        this(getDefaultTables());
+    }
+
+    /**
+     * Creates an evaluator with the weights of the given file.
+     *
+     * @param file the weights file
+     * @throws IOException if the file cannot be read or does not hold a valid number of weights
+     */
+    public PatternEvaluator(Path file) throws IOException {
+        this(load(file));
+    }
+
+    /**
+     * Creates an evaluator with the given tables, which are not changed and can be shared.
+     *
+     * @param tables the scores for black indexed by line and pattern
+     */
+    private PatternEvaluator(int[][] tables) {
+        this.tables = tables;
+        patterns = new int[LINES];
+        saved = new int[(Searcher.MAX_PLY + 1) * LINES];
+        savedScores = new int[Searcher.MAX_PLY + 1];
+    }
+
+    /**
+     * Writes the built-in weights to a file, as a starting point for tuning.
+     *
+     * @param args the weights file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: PatternEvaluator file");
+            return;
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(args[0])))) {
+            out.println("# score of every pattern of a winning line for the marble of digit 1,");
+            out.println("# pattern = sum of digit(i) * 3^i, digit 0 empty, 1 own, 2 opponent");
+            for (int p = 0; p < PATTERNS; p++) {
+                out.print(defaultWeight(p));
+                out.print(p % 27 == 26 ? System.lineSeparator() : " ");
+            }
+        }
+        System.out.println("Wrote the built-in weights to " + args[0]);
+    }
+
+    /**
+     * Reads the patterns of all lines of the board and starts a new sequence of moves.
+     *
+     * @param board the board that is evaluated next
+     */
+    public void reset(Board board) {
+        long black = board.bits(Marble.BLACK);
+        long white = board.bits(Marble.WHITE);
+        score = 0;
+        for (int l = 0; l < LINES; l++) {
+            patterns[l] = pattern(black, white, LINE_MASKS[l]);
+            score += tables[l][patterns[l]];
+        }
+        ply = 0;
+    }
+
+    /**
+     * Applies the move to the board and updates the patterns of the lines it changes.
+     *
+     * @param board  the board passed to reset, changed only through this evaluator since
+     * @param field  index of the empty field we want to change
+     * @param rotate value of the rotation corresponding to the server's protocol
+     * @param marble marble placed on the field, either BLACK or WHITE
+     */
+    //@ requires board.checkMove(field, rotate) && marble != Marble.EMPTY;
+    public void makeMove(Board board, int field, int rotate, Marble marble) {
+        board.makeMove(field, rotate, marble);
+        long black = board.bits(Marble.BLACK);
+        long white = board.bits(Marble.WHITE);
+        int base = ply * LINES;
+        savedScores[ply++] = score;
+        int lines = Board.getMoveLines(field, rotate);
+        while (lines != 0) {
+            int l = Integer.numberOfTrailingZeros(lines);
+            lines &= lines - 1;
+            int old = patterns[l];
+            int current = pattern(black, white, LINE_MASKS[l]);
+            saved[base + l] = old;
+            patterns[l] = current;
+            score += tables[l][current] - tables[l][old];
+        }
+    }
+
+    /**
+     * Undoes the last move applied by makeMove, on the board and on the patterns.
+     *
+     * @param board  the board the move was applied to
+     * @param field  index of the field that was set by the move
+     * @param rotate value of the rotation that was applied by the move
+     */
+    public void unmakeMove(Board board, int field, int rotate) {
+        board.unmakeMove(field, rotate);
+        score = savedScores[--ply];
+        int base = ply * LINES;
+        int lines = Board.getMoveLines(field, rotate);
+        while (lines != 0) {
+            int l = Integer.numberOfTrailingZeros(lines);
+            lines &= lines - 1;
+            patterns[l] = saved[base + l];
+        }
+    }
+
+    /**
+     * Returns the score of the current board.
+     *
+     * @param marble the marble the score is given for
+     * @return the sum of the table values of all lines for the marble
+     */
+    public int evaluate(Marble marble) {
+        return marble == Marble.BLACK ? score : -score;
+    }
+
+    /**
+     * Returns the pattern of a line: the number in base 3 of its fields.
+     *
+     * @param black the bitboard of the black marbles
+     * @param white the bitboard of the white marbles
+     * @param line  the mask of the line
+     * @return the pattern, between 0 and PATTERNS - 1
+     */
+    private static int pattern(long black, long white, long line) {
+        return TERNARY[(int) Long.compress(black, line)]
+                + 2 * TERNARY[(int) Long.compress(white, line)];
+    }
+
+    /**
+     * Returns the tables of the weights file named by the pentago.weights property, or the
+     * tables of the built-in weights if the property is not set or the file cannot be read.
+     * Why the file could not be read is kept for getDefaultError.
+     *
+     * @return the scores for black indexed by line and pattern
+     */
+    private static synchronized int[][] getDefaultTables() {
+        if (defaultTables == null) {
+            String file = System.getProperty(PROPERTY);
+            if (file != null) {
+                try {
+                    defaultTables = load(Paths.get(file));
+                } catch (IOException e) {
+                    defaultError = e;
+                }
+            }
+            if (defaultTables == null) {
+                int[] weights = new int[PATTERNS];
+                for (int p = 0; p < PATTERNS; p++) {
+                    weights[p] = defaultWeight(p);
+                }
+                defaultTables = createTables(weights, false);
+            }
+        }
+        return defaultTables;
+    }
+
+    /**
+     * Returns why the weights file named by the system property pentago.weights could not
+     * be read, the built-in weights are used then. The file is read first if that was not
+     * done yet.
+     *
+     * @return the error, or null if the file was read or the property is not set
+     */
+    public static synchronized IOException getDefaultError() {
+        getDefaultTables();
+        return defaultError;
+    }
+
+    /**
+     * Reads a weights file and builds the tables from it.
+     *
+     * @param file the weights file
+     * @return the scores for black indexed by line and pattern
+     * @throws IOException if the file cannot be read or does not hold a valid number of weights
+     */
+    private static int[][] load(Path file) throws IOException {
+        List<Integer> values = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            for (String token : line.split("\\s+")) {
+                try {
+                    values.add(Integer.parseInt(token));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Not a weight: " + token);
+                }
+            }
+        }
+        if (values.size() != PATTERNS && values.size() != LINES * PATTERNS) {
+            throw new IOException("Expected " + PATTERNS + " or " + LINES * PATTERNS
+                    + " weights, found " + values.size());
+        }
+        int[] weights = new int[values.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = values.get(i);
+        }
+        return createTables(weights, weights.length > PATTERNS);
+    }
+
+    /**
+     * Builds the tables of black's scores from the scores for the marble of digit 1.
+     *
+     * @param weights the scores of the patterns, for one line or for every line
+     * @param perLine whether the weights hold a table for every line
+     * @return the scores for black indexed by line and pattern
+     */
+    private static int[][] createTables(int[] weights, boolean perLine) {
+        int[][] tables = new int[LINES][PATTERNS];
+        for (int l = 0; l < LINES; l++) {
+            int offset = perLine ? l * PATTERNS : 0;
+            for (int p = 0; p < PATTERNS; p++) {
+                tables[l][p] = weights[offset + p] - weights[offset + swap(p)];
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Returns the built-in score of a pattern for the marble of digit 1: a weight for the
+     * number of its marbles on a line the opponent has no marble on.
+     *
+     * @param pattern the pattern of the line
+     * @return the score of the pattern
+     */
+    private static int defaultWeight(int pattern) {
+        int own = 0;
+        int opponent = 0;
+        for (int p = pattern; p > 0; p /= 3) {
+            if (p % 3 == 1) {
+                own++;
+            } else if (p % 3 == 2) {
+                opponent++;
+            }
+        }
+        return opponent == 0 ? COUNT_WEIGHTS[own] : 0;
+    }
+
+    /**
+     * Returns the pattern with the colours swapped.
+     *
+     * @param pattern the pattern of a line
+     * @return the pattern with every 1 digit replaced by 2 and every 2 digit by 1
+     */
+    private static int swap(int pattern) {
+        int swapped = 0;
+        int power = 1;
+        for (int p = pattern; p > 0; p /= 3) {
+            int digit = p % 3;
+            swapped += (digit == 0 ? 0 : 3 - digit) * power;
+            power *= 3;
+        }
+        return swapped;
+    }
+
+    /**
+     * Builds the table that reads a 5 bit number as a number in base 3.
+     *
+     * @return the base 3 values indexed by the bits
+     */
+    private static int[] createTernary() {
+        int[] table = new int[32];
+        for (int bits = 0; bits < 32; bits++) {
+            int power = 1;
+            for (int i = 0; i < 5; i++) {
+                if ((bits & (1 << i)) != 0) {
+                    table[bits] += power;
+                }
+                power *= 3;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Reads the masks of the winning lines from the board.
+     *
+     * @return the masks indexed by line
+     */
+    private static long[] createLineMasks() {
+        long[] masks = new long[LINES];
+        for (int l = 0; l < LINES; l++) {
+            masks[l] = Board.getWinningLine(l);
+        }
+        return masks;
+    }
+}
@@ -0,0 +1,141 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+import java.util.SplittableRandom;
+
+public class Playout {
+    private static final int FIELDS = 36;
+    private static final int ROTATIONS = 8;
+    //ROTATED[rotate][field] is the field a marble ends up on when the
+    //rotation is applied, fields outside the rotated quadrant stay where they are
+    private static final int[][] ROTATED = createRotatedFields();
+
+    private final SplittableRandom random;
+    private final Board scratch;
+    private final int[] empty;
+    private int emptyCount;
+
+    /**
+     * Creates a playout engine with a random generator with the given seed. An engine is
+     * not thread safe, every thread uses its own engine, created with split or a seed.
+     *
+     * @param seed the seed of the random generator
+     */
+    public Playout(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    /**
+     * Creates a playout engine that uses the given random generator.
+     *
+     * @param random the random generator of the engine
+     */
+    private Playout(SplittableRandom random) {
+        this.random = random;
+        scratch = new Board();
+        empty = new int[FIELDS];
+    }
+
+    /**
+     * Returns a new engine whose random generator is split off from the generator
+     * of this engine, so engines for several threads can be made from one seed.
+     *
+     * @return the new engine
+     */
+    public Playout split() {
+        return new Playout(random.split());
+    }
+
+    /**
+     * Plays random games from the board and counts the results for one marble.
+     * The board is not changed.
+     *
+     * @param board  the board the games start from
+     * @param toMove the marble that moves first
+     * @param marble the marble the results are counted for
+     * @param games  the number of games
+     * @param result the result the games are added to
+     */
+    public void run(Board board, Marble toMove, Marble marble, long games, PlayoutResult result) {
+        for (long i = 0; i < games; i++) {
+            scratch.copyFrom(board);
+            Marble winner = play(scratch, toMove);
+            result.add(winner == marble ? 1 : winner == Marble.EMPTY ? 0 : -1);
+        }
+    }
+
+    /**
+     * Finishes the game on the board with uniformly random legal moves.
+     * The board is changed, it ends in the final position of the game.
+     *
+     * @param board  the board the game is played on
+     * @param toMove the marble that moves first
+     * @return the winner, or Marble.EMPTY if the game is a draw
+     */
+    public Marble play(Board board, Marble toMove) {
+        fillEmpty(board);
+        Marble marble = toMove;
+        while (emptyCount > 0 && !board.hasWinner()) {
+            //one random number chooses both the field and the rotation
+            int choice = random.nextInt(emptyCount * ROTATIONS);
+            int slot = choice >>> 3;
+            int field = empty[slot];
+            int rotate = choice & (ROTATIONS - 1);
+            empty[slot] = empty[--emptyCount];
+            board.makeMove(field, rotate, marble);
+            //a rotation moves the empty fields of its quadrant around
+            int[] rotated = ROTATED[rotate];
+            for (int i = 0; i < emptyCount; i++) {
+                empty[i] = rotated[empty[i]];
+            }
+            marble = marble.other();
+        }
+        return board.getWinner();
+    }
+
+    /**
+     * Returns a uniformly random legal move on the board.
+     *
+     * @param board the board the move is made on
+     * @return the code of the move, or -1 if the board has no empty field
+     */
+    public int randomMove(Board board) {
+        fillEmpty(board);
+        if (emptyCount == 0) {
+            return -1;
+        }
+        return Move.encode(empty[random.nextInt(emptyCount)], random.nextInt(ROTATIONS));
+    }
+
+    /**
+     * Fills the list of empty fields of the board.
+     *
+     * @param board the board whose empty fields are listed
+     */
+    private void fillEmpty(Board board) {
+        emptyCount = 0;
+        for (long bits = board.bits(Marble.EMPTY); bits != 0; bits &= bits - 1) {
+            empty[emptyCount++] = Long.numberOfTrailingZeros(bits);
+        }
+    }
+
+    /**
+     * Builds the table of where every field moves to for every rotation.
+     *
+     * @return the table indexed by rotation and field
+     */
+    private static int[][] createRotatedFields() {
+        int[][] rotated = new int[ROTATIONS][FIELDS];
+        Board board = new Board();
+        for (int rotate = 0; rotate < ROTATIONS; rotate++) {
+            for (int field = 0; field < FIELDS; field++) {
+                board.makeMove(field, rotate, Marble.BLACK);
+                rotated[rotate][field] = Long.numberOfTrailingZeros(board.bits(Marble.BLACK));
+                board.unmakeMove(field, rotate);
+            }
+        }
+        return rotated;
+    }
+}
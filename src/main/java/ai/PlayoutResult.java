@@ -0,0 +1,90 @@
+package ai;
+
+public class PlayoutResult {
+    private long wins;
+    private long draws;
+    private long losses;
+
+    /**
+     * Counts one finished game.
+     *
+     * @param outcome 1 for a win, 0 for a draw and -1 for a loss
+     */
+    //@ requires outcome >= -1 && outcome <= 1;
+    public void add(int outcome) {
+        if (outcome > 0) {
+            wins++;
+        } else if (outcome < 0) {
+            losses++;
+        } else {
+            draws++;
+        }
+    }
+
+    /**
+     * Adds the counts of another result to this result.
+     *
+     * @param other the result that is added
+     */
+    public void add(PlayoutResult other) {
+        wins += other.wins;
+        draws += other.draws;
+        losses += other.losses;
+    }
+
+    /**
+     * Returns the number of games won.
+     *
+     * @return the number of wins
+     */
+    /*@ pure */public long getWins() {
+        return wins;
+    }
+
+    /**
+     * Returns the number of games that ended in a draw.
+     *
+     * @return the number of draws
+     */
+    /*@ pure */public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Returns the number of games lost.
+     *
+     * @return the number of losses
+     */
+    /*@ pure */public long getLosses() {
+        return losses;
+    }
+
+    /**
+     * Returns the number of games counted.
+     *
+     * @return the number of games
+     */
+    /*@ pure */public long getGames() {
+        return wins + draws + losses;
+    }
+
+    /**
+     * Returns the average score, counting a win as 1 and a draw as a half.
+     *
+     * @return the score between 0 and 1, or 0.5 if no game was counted
+     */
+    /*@ pure */public double getScore() {
+        long games = getGames();
+        return games == 0 ? 0.5 : (wins + draws / 2.0) / games;
+    }
+
+    /**
+     * Returns the counts as a string.
+     *
+     * @return the wins, draws and losses
+     */
+    @Override
+    public String toString() {
+        return "wins " + wins + ", draws " + draws + ", losses " + losses;
+    }
+}
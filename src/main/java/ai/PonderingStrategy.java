@@ -0,0 +1,24 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+public interface PonderingStrategy extends Strategy {
+    /**
+     * Starts searching the board in the background while the opponent is thinking.
+     * The method returns at once, the search runs until stopPondering is called.
+     * A following determineMove on a position reached from this board continues
+     * with what the background search found.
+     *
+     * @param board  the board after our move, it is not changed
+     * @param marble the marble of the opponent, who is to move on the board
+     */
+    void ponder(Board board, Marble marble);
+
+    /**
+     * Stops the background search and waits until it has ended.
+     * Does nothing if the strategy is not pondering.
+     */
+    void stopPondering();
+
+}
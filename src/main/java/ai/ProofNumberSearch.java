@@ -0,0 +1,322 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+public class ProofNumberSearch {
+    //Depth-first proof-number search (df-pn) for a forced win of the attacker, the marble to
+    //move at the root. The numbers are kept in negamax form: phi is the proof number and delta
+    //the disproof number of the goal of the marble to move, which is winning for the attacker
+    //and not losing for the defender. A node is proven when phi is 0 and disproven when delta
+    //is 0. The search can be limited to a number of plies, a position that is not won within
+    //them counts as not won. Since the number of marbles on a board tells how many plies were
+    //played, a position always has the same number of plies left within one search, and the
+    //plies are stored with the numbers so proofs and disproofs are reused by other searches.
+    public static final int PROVEN = 1;
+    public static final int DISPROVEN = -1;
+    public static final int UNKNOWN = 0;
+    private static final int INFINITY = ProofTable.INFINITY;
+    private static final long WHITE_TO_MOVE = 0x9E3779B97F4A7C15L;
+    private static final long WHITE_ATTACKS = 0xC2B2AE3D27D4EB4FL;
+
+    private final ProofTable table;
+    private final MoveGenerator generator;
+    private final MoveList[] moves;
+    private final long[][] keys;
+    private final int[][] remainders;
+    private final int[][] phis;
+    private final int[][] deltas;
+    private Marble attacker;
+    private volatile SearchLimits limits;
+    private long nodes;
+    private long maxNodes;
+    private boolean stopped;
+    private int bestMove;
+
+    /**
+     * Creates a solver with its own table of the default size.
+     */
+    public ProofNumberSearch() {
+        this(new ProofTable());
+    }
+
+    /**
+     * Creates a solver that uses the given table. A table can be shared by solvers
+     * running in different threads.
+     *
+     * @param table the table of proof and disproof numbers
+     */
+    //@ requires table != null;
+    public ProofNumberSearch(ProofTable table) {
+        this.table = table;
+        generator = new MoveGenerator();
+        moves = new MoveList[Searcher.MAX_PLY + 1];
+        keys = new long[moves.length][Move.COUNT];
+        remainders = new int[moves.length][Move.COUNT];
+        phis = new int[moves.length][Move.COUNT];
+        deltas = new int[moves.length][Move.COUNT];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = new MoveList();
+        }
+        bestMove = -1;
+    }
+
+    /**
+     * Analyses a position. Arguments: the number of plies (default 5), the node budget
+     * (default 1000000) and the moves leading to the position as index~rotation, starting
+     * with black. The attacker is the marble to move after these moves.
+     *
+     * @param args the optional plies, node budget and moves
+     */
+    public static void main(String[] args) {
+        int plies = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : 1000000;
+        Board board = new Board();
+        Marble marble = Marble.BLACK;
+        for (int i = 2; i < args.length; i++) {
+            Move move = Move.fromProtocol("MOVE~" + args[i]);
+            if (move == null || !board.checkMove(move.getIndex(), move.getRotation())) {
+                System.out.println("Illegal move " + args[i]);
+                return;
+            }
+            board.makeMove(move.getIndex(), move.getRotation(), marble);
+            marble = marble.other();
+        }
+        System.out.println(board);
+        ProofNumberSearch search = new ProofNumberSearch();
+        long start = System.nanoTime();
+        int result = search.solve(board, marble, plies, SearchLimits.nodes(budget));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        String verdict = result == PROVEN ? "wins"
+                : result == DISPROVEN ? "does not win" : "unknown";
+        System.out.println(marble + " " + verdict + " within " + plies + " plies");
+        if (result == PROVEN && search.getBestMove() >= 0) {
+            System.out.println("Winning move " + Move.of(search.getBestMove()).toProtocol());
+        }
+        System.out.printf("%d nodes in %.2f s (%.0f nodes/s)%n", search.getNodes(), seconds,
+                search.getNodes() / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * Tries to prove that the marble to move wins within the given number of plies.
+     *
+     * @param board    the board of the position, it is restored before returning
+     * @param marble   the marble to move, the attacker
+     * @param maxPlies the number of plies the win has to be reached in, counting both marbles
+     * @param limits   the deadline and the node budget of the search
+     * @return PROVEN, DISPROVEN, or UNKNOWN when the limits were reached first
+     */
+    //@ requires board != null && marble != Marble.EMPTY && maxPlies > 0;
+    public int solve(Board board, Marble marble, int maxPlies, SearchLimits limits) {
+        attacker = marble;
+        this.limits = limits;
+        maxNodes = limits.getNodes();
+        nodes = 0;
+        stopped = false;
+        bestMove = -1;
+        if (board.gameOver()) {
+            return board.getWinner() == marble ? PROVEN : DISPROVEN;
+        }
+        int remaining = Math.min(maxPlies, EndgameSolver.empties(board));
+        long result = search(board, marble, key(board, marble), remaining, 0, INFINITY, INFINITY);
+        if (phi(result) == 0) {
+            for (int i = 0; i < moves[0].size() && bestMove < 0; i++) {
+                if (deltas[0][i] == 0) {
+                    bestMove = moves[0].get(i);
+                }
+            }
+            return PROVEN;
+        }
+        return delta(result) == 0 ? DISPROVEN : UNKNOWN;
+    }
+
+    /**
+     * Searches a node until its proof number reaches thPhi or its disproof number
+     * reaches thDelta, or until the search is stopped.
+     *
+     * @param board     the board of the position
+     * @param marble    the marble to move
+     * @param key       the key of the position in the table
+     * @param remaining the number of plies left, at most the number of empty fields
+     * @param ply       the distance from the root
+     * @param thPhi     the threshold of the proof number
+     * @param thDelta   the threshold of the disproof number
+     * @return the proof number in the high and the disproof number in the low half
+     */
+    private long search(Board board, Marble marble, long key, int remaining, int ply,
+                        int thPhi, int thDelta) {
+        nodes++;
+        if ((nodes & 1023) == 0 && limits.isExpired()) {
+            stopped = true;
+        }
+        if (nodes >= maxNodes) {
+            stopped = true;
+        }
+        long start = nodes;
+        MoveList list = moves[ply];
+        int count = generator.generate(board, marble, list);
+        long[] childKeys = keys[ply];
+        int[] childRemaining = remainders[ply];
+        int[] phi = phis[ply];
+        int[] delta = deltas[ply];
+        boolean attacking = marble == attacker;
+        for (int i = 0; i < count; i++) {
+            int move = list.get(i);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            if (board.gameOver() || remaining == 1) {
+                //the child is decided: the goal of the marble that moves next is reached
+                //when it is the defender and the attacker did not win
+                boolean attackerWon = board.hasWinner() && board.getWinner() == attacker;
+                boolean reached = attacking != attackerWon;
+                phi[i] = reached ? 0 : INFINITY;
+                delta[i] = reached ? INFINITY : 0;
+            } else {
+                childKeys[i] = key(board, marble.other());
+                childRemaining[i] = Math.min(remaining - 1, EndgameSolver.empties(board));
+                lookup(childKeys[i], childRemaining[i], !attacking, phi, delta, i);
+            }
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+            if (delta[i] == 0) {
+                //a move reaches the goal at once
+                table.store(key, 0, INFINITY, remaining, 1);
+                return pack(0, INFINITY);
+            }
+        }
+        int nodePhi;
+        int nodeDelta;
+        while (true) {
+            nodePhi = INFINITY;
+            nodeDelta = 0;
+            int best = -1;
+            int second = INFINITY;
+            for (int i = 0; i < count; i++) {
+                if (delta[i] < nodePhi) {
+                    second = nodePhi;
+                    nodePhi = delta[i];
+                    best = i;
+                } else if (delta[i] < second) {
+                    second = delta[i];
+                }
+                nodeDelta = add(nodeDelta, phi[i]);
+            }
+            if (nodePhi >= thPhi || nodeDelta >= thDelta || stopped) {
+                break;
+            }
+            int childThPhi = (int) Math.min(INFINITY, (long) thDelta - nodeDelta + phi[best]);
+            int childThDelta = Math.min(thPhi, second == INFINITY ? INFINITY : second + 1);
+            int move = list.get(best);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            long result = search(board, marble.other(), childKeys[best], childRemaining[best],
+                    ply + 1, childThPhi, childThDelta);
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+            phi[best] = phi(result);
+            delta[best] = delta(result);
+        }
+        table.store(key, nodePhi, nodeDelta, remaining, nodes - start + 1);
+        return pack(nodePhi, nodeDelta);
+    }
+
+    /**
+     * Sets the numbers of a child from the table, or to 1 when the table has no usable entry.
+     * A proof of a win for the attacker holds for more plies and a disproof for fewer plies.
+     *
+     * @param key       the key of the child
+     * @param remaining the number of plies left at the child
+     * @param attacking whether the attacker is to move at the child
+     * @param phi       the proof numbers of the children
+     * @param delta     the disproof numbers of the children
+     * @param i         the index of the child
+     */
+    private void lookup(long key, int remaining, boolean attacking, int[] phi, int[] delta,
+                        int i) {
+        phi[i] = 1;
+        delta[i] = 1;
+        long data = table.probe(key);
+        if (data == 0) {
+            return;
+        }
+        int storedPhi = ProofTable.phi(data);
+        int storedDelta = ProofTable.delta(data);
+        int plies = ProofTable.plies(data);
+        boolean won = (attacking ? storedPhi : storedDelta) == 0;
+        boolean notWon = (attacking ? storedDelta : storedPhi) == 0;
+        if (plies == remaining || won && remaining >= plies || notWon && remaining <= plies) {
+            phi[i] = storedPhi;
+            delta[i] = storedDelta;
+        }
+    }
+
+    /**
+     * Returns the key of a position in the table, which depends on the marble to move
+     * and on the attacker as well.
+     *
+     * @param board  the board of the position
+     * @param marble the marble to move
+     * @return the key of the position
+     */
+    private long key(Board board, Marble marble) {
+        long key = board.hash();
+        if (marble == Marble.WHITE) {
+            key ^= WHITE_TO_MOVE;
+        }
+        if (attacker == Marble.WHITE) {
+            key ^= WHITE_ATTACKS;
+        }
+        return key;
+    }
+
+    /**
+     * Adds two proof or disproof numbers. The sum of finite numbers stays below INFINITY.
+     *
+     * @param a the first number
+     * @param b the second number
+     * @return the sum
+     */
+    private static int add(int a, int b) {
+        if (a == INFINITY || b == INFINITY) {
+            return INFINITY;
+        }
+        return Math.min(INFINITY - 1, a + b);
+    }
+
+    private static long pack(int phi, int delta) {
+        return ((long) phi << 32) | delta;
+    }
+
+    private static int phi(long result) {
+        return (int) (result >>> 32);
+    }
+
+    private static int delta(long result) {
+        return (int) result;
+    }
+
+    /**
+     * Stops the running search by cancelling its limits, it then returns UNKNOWN unless
+     * it is already decided.
+     */
+    public void cancel() {
+        SearchLimits running = limits;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    /**
+     * Returns the winning move found by the last call of solve.
+     *
+     * @return the code of the move, or -1 if the last search did not prove a win
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Returns the number of nodes searched by the last call of solve.
+     *
+     * @return the node count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+}
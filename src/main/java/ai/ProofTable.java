@@ -0,0 +1,167 @@
+package ai;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+public class ProofTable {
+    //Stores the proof and disproof numbers of ProofNumberSearch. Like TranspositionTable every
+    //entry takes two longs, the key XOR the data and the data, so several solvers can share
+    //one table without locks and a torn entry is seen as a miss.
+    //
+    //Layout of the data:
+    //bits 0-23  proof number of the marble to move
+    //bits 24-47 disproof number of the marble to move
+    //bits 48-53 number of plies the numbers were computed for
+    //bits 54-61 work, the bit length of the number of nodes searched below the entry
+    //
+    //The entries are grouped in buckets of four. A new entry replaces the entry of the same
+    //key, an empty one, or else the one with the least work, so the expensive results stay.
+    public static final int INFINITY = (1 << 24) - 1;
+    public static final int DEFAULT_MEGABYTES = 16;
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET = 4;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] table;
+    private final int bucketMask;
+
+    /**
+     * Creates a table with the default size.
+     */
+    public ProofTable() {
+        this(DEFAULT_MEGABYTES);
+    }
+
+    /**
+     * Creates a table of at most the given size. The number of entries is rounded
+     * down to a power of two.
+     *
+     * @param megabytes the maximum memory used by the table
+     */
+    //@ requires megabytes > 0;
+    public ProofTable(int megabytes) {
+        long entries = Long.highestOneBit(Math.max(BUCKET,
+                megabytes * 1024L * 1024L / ENTRY_BYTES));
+        entries = Math.min(entries, 1L << 27);
+        table = new long[(int) entries * 2];
+        bucketMask = (int) (entries / BUCKET) - 1;
+    }
+
+    /**
+     * Returns the position in the table of the first entry of the bucket of the key.
+     *
+     * @param key the hash of the position
+     * @return the index of the first long of the bucket
+     */
+    private int bucket(long key) {
+        return ((int) key & bucketMask) * BUCKET * 2;
+    }
+
+    /**
+     * Looks up the entry of the given key.
+     *
+     * @param key the hash of the position
+     * @return the data of the entry, or 0 if the table has no entry for the key
+     */
+    public long probe(long key) {
+        int index = bucket(key);
+        for (int i = index; i < index + BUCKET * 2; i += 2) {
+            long data = (long) SLOTS.getOpaque(table, i + 1);
+            if (((long) SLOTS.getOpaque(table, i) ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores the proof and disproof numbers of the given position.
+     *
+     * @param key   the hash of the position
+     * @param phi   the proof number of the marble to move
+     * @param delta the disproof number of the marble to move
+     * @param plies the number of plies the numbers were computed for
+     * @param nodes the number of nodes searched to compute the numbers
+     */
+    /*@ requires phi >= 0 && phi <= INFINITY && delta >= 0 && delta <= INFINITY;
+        requires plies >= 0 && plies < 64;
+    @*/
+    public void store(long key, int phi, int delta, int plies, long nodes) {
+        int work = 64 - Long.numberOfLeadingZeros(nodes);
+        long data = ((long) work << 54) | ((long) plies << 48) | ((long) delta << 24) | phi;
+        int index = bucket(key);
+        int slot = index;
+        int least = Integer.MAX_VALUE;
+        for (int i = index; i < index + BUCKET * 2; i += 2) {
+            long old = (long) SLOTS.getOpaque(table, i + 1);
+            if (old == 0 || ((long) SLOTS.getOpaque(table, i) ^ old) == key) {
+                slot = i;
+                break;
+            }
+            if (work(old) < least) {
+                least = work(old);
+                slot = i;
+            }
+        }
+        SLOTS.setOpaque(table, slot, key ^ data);
+        SLOTS.setOpaque(table, slot + 1, data);
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length; i++) {
+            SLOTS.setOpaque(table, i, 0L);
+        }
+    }
+
+    /**
+     * Returns the proof number stored in the data of an entry.
+     *
+     * @param data the data returned by probe
+     * @return the proof number of the marble to move
+     */
+    public static int phi(long data) {
+        return (int) data & INFINITY;
+    }
+
+    /**
+     * Returns the disproof number stored in the data of an entry.
+     *
+     * @param data the data returned by probe
+     * @return the disproof number of the marble to move
+     */
+    public static int delta(long data) {
+        return (int) (data >>> 24) & INFINITY;
+    }
+
+    /**
+     * Returns the number of plies stored in the data of an entry.
+     *
+     * @param data the data returned by probe
+     * @return the number of plies the numbers were computed for
+     */
+    public static int plies(long data) {
+        return (int) (data >>> 48) & 63;
+    }
+
+    /**
+     * Returns the work stored in the data of an entry.
+     *
+     * @param data the data returned by probe
+     * @return the bit length of the number of nodes searched for the entry
+     */
+    public static int work(long data) {
+        return (int) (data >>> 54) & 255;
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     *
+     * @return the capacity of the table
+     */
+    public int capacity() {
+        return table.length / 2;
+    }
+}
@@ -0,0 +1,236 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RunSearchWorker {
+    //Searches root moves for a DistributedStrategy. Every connection is a coordinator that
+    //sends one task at a time and gets its own searcher, all searchers of the worker share one
+    //transposition table, which is kept between the tasks and the iterations of a search.
+    //
+    //The messages are single lines with the fields separated by ~, like the game protocol:
+    //coordinator to worker  SEARCH~task~black bits~white bits~marble~move~depth~alpha~millis
+    //                       CANCEL~task
+    //worker to coordinator  RESULT~task~score~nodes
+    //                       STOPPED~task~nodes        the task was cancelled or ran out of time
+    //                       ERROR~description         the message could not be handled
+    public static final String SEARCH = "SEARCH";
+    public static final String CANCEL = "CANCEL";
+    public static final String RESULT = "RESULT";
+    public static final String STOPPED = "STOPPED";
+    public static final String ERROR = "ERROR";
+    public static final String LISTENING = "Search worker listening on port ";
+    private static final long FULL = (1L << 36) - 1;
+
+    private final ServerSocket server;
+    private final TranspositionTable table;
+
+    /**
+     * Creates a worker listening on the given port.
+     *
+     * @param port      the port, or 0 for any free port
+     * @param megabytes the size of the transposition table
+     * @throws IOException if the port cannot be opened
+     */
+    public RunSearchWorker(int port, int megabytes) throws IOException {
+        server = new ServerSocket(port);
+        table = new TranspositionTable(megabytes);
+    }
+
+    /**
+     * Starts a worker. Arguments: the port (default 0, any free port) and the size of the
+     * transposition table in megabytes (default 64). The port is printed once the worker
+     * listens, so a script starting it can read it.
+     *
+     * @param args the optional port and table size
+     */
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int megabytes = args.length > 1 ? Integer.parseInt(args[1])
+                : TranspositionTable.DEFAULT_MEGABYTES * 2;
+        try {
+            RunSearchWorker worker = new RunSearchWorker(port, megabytes);
+            System.out.println(LISTENING + worker.getPort());
+            worker.run();
+        } catch (IOException e) {
+            System.out.println("Could not start the search worker: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Accepts coordinators until the server socket is closed, every coordinator
+     * is served by its own thread.
+     */
+    public void run() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread thread = new Thread(new Connection(socket, table), "search-worker");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                //the server socket was closed
+            }
+        }
+    }
+
+    /**
+     * Returns the port the worker listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Stops accepting coordinators.
+     */
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            //already closed
+        }
+    }
+
+    private static class Connection implements Runnable {
+        private final Socket socket;
+        private final Searcher searcher;
+        private final ExecutorService executor;
+        private PrintWriter out;
+        private volatile int running;
+        private volatile int cancelled;
+
+        /**
+         * Creates the handler of a coordinator.
+         *
+         * @param socket the socket of the coordinator
+         * @param table  the table shared by all coordinators of the worker
+         */
+        Connection(Socket socket, TranspositionTable table) {
+            this.socket = socket;
+            searcher = new Searcher(table, 0);
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "search-worker-task");
+                thread.setDaemon(true);
+                return thread;
+            });
+            running = -1;
+            cancelled = -1;
+        }
+
+        /**
+         * Reads the messages of the coordinator. Searches run on their own thread, so a
+         * cancel message is read while the search is running.
+         */
+        @Override
+        public void run() {
+            try (Socket s = socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(
+                         s.getInputStream()))) {
+                out = new PrintWriter(s.getOutputStream(), true);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] parts = line.split("~");
+                    if (parts[0].equals(SEARCH)) {
+                        executor.execute(() -> search(parts));
+                    } else if (parts[0].equals(CANCEL) && parts.length == 2) {
+                        cancel(parts[1]);
+                    } else {
+                        send(ERROR + "~Unknown message " + line);
+                    }
+                }
+            } catch (IOException e) {
+                //the coordinator is gone
+            }
+            searcher.stop();
+            executor.shutdownNow();
+        }
+
+        /**
+         * Stops the task with the given id, also when it has not started yet.
+         *
+         * @param id the id of the task
+         */
+        private void cancel(String id) {
+            try {
+                cancelled = Integer.parseInt(id);
+            } catch (NumberFormatException e) {
+                send(ERROR + "~Invalid task " + id);
+                return;
+            }
+            if (running == cancelled) {
+                searcher.stop();
+            }
+        }
+
+        /**
+         * Runs a search task and sends its result.
+         *
+         * @param parts the fields of the SEARCH message
+         */
+        private void search(String[] parts) {
+            int task;
+            Board board;
+            Marble marble;
+            int move;
+            int depth;
+            int alpha;
+            long deadline;
+            try {
+                task = Integer.parseInt(parts[1]);
+                long black = Long.parseLong(parts[2]);
+                long white = Long.parseLong(parts[3]);
+                marble = Marble.valueOf(parts[4]);
+                move = Integer.parseInt(parts[5]);
+                depth = Integer.parseInt(parts[6]);
+                alpha = Integer.parseInt(parts[7]);
+                deadline = System.nanoTime() + Long.parseLong(parts[8]) * 1_000_000L;
+                if ((black & white) != 0 || ((black | white) & ~FULL) != 0
+                        || marble == Marble.EMPTY || move < 0 || move >= Move.COUNT
+                        || depth < 1 || depth >= Searcher.MAX_PLY) {
+                    throw new IllegalArgumentException();
+                }
+                board = Board.fromBits(black, white);
+                if (!board.checkMove(Move.index(move), Move.rotation(move))) {
+                    throw new IllegalArgumentException();
+                }
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                send(ERROR + "~Invalid task " + String.join("~", parts));
+                return;
+            }
+            running = task;
+            searcher.prepare();
+            if (cancelled == task) {
+                searcher.stop();
+            }
+            int score = searcher.searchMove(board, marble, move, depth, alpha,
+                    SearchLimits.deadline(deadline));
+            running = -1;
+            if (searcher.isStopped()) {
+                send(STOPPED + "~" + task + "~" + searcher.getNodes());
+            } else {
+                send(RESULT + "~" + task + "~" + score + "~" + searcher.getNodes());
+            }
+        }
+
+        /**
+         * Sends a message to the coordinator.
+         *
+         * @param message the message
+         */
+        private synchronized void send(String message) {
+            out.println(message);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ai;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SearchLimits {
+    //The limits also carry the cancellation of the search they are given to. Every call
+    //gets limits of its own, so cancelling them stops that search and not another search
+    //of the same strategy, and a cancel sent before the search has started is not lost.
+    //Limits made from others with withNodes share their cancellation.
+    private final long deadline;
+    private final long nodes;
+    private final AtomicBoolean cancelled;
+
+    /**
+     * Creates limits with the given deadline, node budget and cancellation.
+     *
+     * @param deadline  the System.nanoTime value at which the search stops
+     * @param nodes     the number of nodes the search may visit
+     * @param cancelled the flag that is set when the search is cancelled
+     */
+    private SearchLimits(long deadline, long nodes, AtomicBoolean cancelled) {
+        this.deadline = deadline;
+        this.nodes = nodes;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Returns limits without a deadline and without a node budget. A search with these
+     * limits only ends when it is complete or cancelled.
+     *
+     * @return the empty limits
+     */
+    public static SearchLimits none() {
+        return new SearchLimits(Long.MAX_VALUE, Long.MAX_VALUE, new AtomicBoolean());
+    }
+
+    /**
+     * Returns limits that end the search the given time from now.
+     *
+     * @param millis the time in milliseconds the search may take
+     * @return the limits with the deadline
+     */
+    public static SearchLimits moveTime(long millis) {
+        return deadline(System.nanoTime() + millis * 1000000L);
+    }
+
+    /**
+     * Returns limits that end the search at the given moment.
+     *
+     * @param nanoTime the System.nanoTime value at which the search stops
+     * @return the limits with the deadline
+     */
+    public static SearchLimits deadline(long nanoTime) {
+        return new SearchLimits(nanoTime, Long.MAX_VALUE, new AtomicBoolean());
+    }
+
+    /**
+     * Returns limits that end the search after the given number of nodes. For the
+     * tree searches a node is a searched position, for Monte Carlo search a playout.
+     *
+     * @param nodes the number of nodes the search may visit
+     * @return the limits with the node budget
+     */
+    //@ requires nodes > 0;
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(Long.MAX_VALUE, nodes, new AtomicBoolean());
+    }
+
+    /**
+     * Returns these limits with the given node budget added. Cancelling either of them
+     * cancels both.
+     *
+     * @param budget the number of nodes the search may visit
+     * @return the limits with this deadline and the node budget
+     */
+    //@ requires budget > 0;
+    public SearchLimits withNodes(long budget) {
+        return new SearchLimits(deadline, budget, cancelled);
+    }
+
+    /**
+     * Returns limits with the same deadline and node budget that are cancelled
+     * independently of these.
+     *
+     * @return the copy of the limits, not cancelled
+     */
+    public SearchLimits copy() {
+        return new SearchLimits(deadline, nodes, new AtomicBoolean());
+    }
+
+    /**
+     * Cancels the search with these limits, which then returns as soon as it notices.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Returns whether the limits were cancelled.
+     *
+     * @return whether cancel was called
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Returns the moment at which the search stops.
+     *
+     * @return the System.nanoTime value of the deadline, Long.MAX_VALUE if there is none
+     */
+    /*@ pure */public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Returns the number of nodes the search may visit.
+     *
+     * @return the node budget, Long.MAX_VALUE if there is none
+     */
+    /*@ pure */public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns whether the limits have a deadline.
+     *
+     * @return whether the search has to stop at a certain moment
+     */
+    /*@ pure */public boolean hasDeadline() {
+        return deadline != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns whether the deadline has passed or the limits were cancelled.
+     *
+     * @return whether the search has to stop now
+     */
+    public boolean isExpired() {
+        return cancelled.get() || System.nanoTime() > deadline;
+    }
+}
@@ -0,0 +1,575 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+class Searcher {
+    static final int WIN = 1000000;
+    static final int INFINITY = WIN + 1;
+    static final int MAX_PLY = 37;
+    //a score this high can only come from a line of five found by the search
+    static final int WIN_BOUND = WIN - MAX_PLY;
+    private static final int CHECK_INTERVAL = 1023;
+    //the order in which the moves of a node are searched: the move of the principal variation
+    //or of the table, moves that win at once, moves on a field the opponent wins on, the two
+    //killer moves of the ply, and then the rest by their history score
+    private static final int FIRST_SCORE = 1 << 30;
+    private static final int WIN_SCORE = 1 << 29;
+    private static final int BLOCK_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    //only this many moves are selected by score, the rest of a node that is not cut off by
+    //then is searched in the order it was generated instead of selecting among 288 moves
+    private static final int SELECTED_MOVES = 32;
+    //the history scores are halved when one of them passes this, and before every search
+    private static final int HISTORY_LIMIT = 1 << 20;
+    //mixed into the key when white is to move, so a hint for the player that is not
+    //to move cannot reuse entries of the other player
+    private static final long WHITE_TO_MOVE = 0x9E3779B97F4A7C15L;
+
+    private final TranspositionTable table;
+    private final int id;
+    private final MoveGenerator generator;
+    private final PatternEvaluator evaluator;
+    private final MoveList[] moves;
+    private final int[][] scores;
+    private final int[][] killers;
+    //indexed by the colour times Move.COUNT plus the move code, so by field, rotation and colour
+    private final int[] history;
+    private final long[] wins;
+    private final long[] opponentWins;
+    private final int[][] pv;
+    private final int[] pvLength;
+    private final int[] previousPv;
+    private int previousPvLength;
+    //the keys of the positions after the first and the first two moves of the principal
+    //variation, the positions we expect to search next: after the opponent's predicted
+    //reply, or after the predicted move when the previous search was pondering
+    private final long[] expectedKeys;
+    private int searchedPlies;
+    private boolean followPv;
+    private Board board;
+    private SearchLimits limits;
+    private long maxNodes;
+    private long nodes;
+    private volatile boolean stopped;
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    /**
+     * Creates a searcher with all the move lists and principal variation
+     * tables it needs, so a search does not allocate per node.
+     *
+     * @param table the transposition table the searcher reads and writes
+     * @param id    0 for the main searcher, a different number for every helper
+     */
+    Searcher(TranspositionTable table, int id) {
+        this.table = table;
+        this.id = id;
+        generator = new MoveGenerator();
+        evaluator = new PatternEvaluator();
+        moves = new MoveList[MAX_PLY + 1];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = new MoveList();
+        }
+        scores = new int[MAX_PLY + 1][Move.COUNT];
+        killers = new int[MAX_PLY + 1][2];
+        history = new int[2 * Move.COUNT];
+        wins = new long[8];
+        opponentWins = new long[8];
+        pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+        pvLength = new int[MAX_PLY + 1];
+        previousPv = new int[MAX_PLY + 1];
+        expectedKeys = new long[3];
+        searchedPlies = -1;
+    }
+
+    /**
+     * Clears the stop request of the previous search. Called by the thread that starts
+     * the search, so a stop request sent before a helper thread has started is not lost.
+     * A search that is cancelled from outside is cancelled through its limits instead.
+     */
+    void prepare() {
+        stopped = false;
+    }
+
+    /**
+     * Asks a running search to stop as soon as possible.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Searches the board with iterative deepening until the maximum depth is reached,
+     * a forced result is found, the limits expire or are cancelled, the node budget is
+     * used up or stop is called.
+     * Helpers share the transposition table with the main searcher. To search different
+     * parts of the tree they start with a different root move, and every second
+     * helper searches one ply deeper than the main searcher.
+     *
+     * @param root     the board we search, it is not changed
+     * @param marble   the marble that moves first
+     * @param limits   the deadline, the node budget of this searcher and the cancellation
+     * @param maxDepth the deepest iteration we search
+     * @return the code of the best move found, or -1 if there is no legal move
+     */
+    int search(Board root, Marble marble, SearchLimits limits, int maxDepth) {
+        start(root, limits);
+        completedDepth = 0;
+        bestScore = 0;
+
+        MoveList rootMoves = moves[0];
+        generator.generate(board, marble, rootMoves);
+        if (rootMoves.isEmpty()) {
+            bestMove = -1;
+            return bestMove;
+        }
+        bestMove = rootMoves.get(id % rootMoves.size());
+        if (carryPv(root) && id == 0 && rootMoves.indexOf(previousPv[0]) >= 0) {
+            bestMove = previousPv[0];
+        }
+
+        for (int depth = 1 + (id & 1); depth <= Math.min(maxDepth, MAX_PLY - 1); depth++) {
+            int score = searchRoot(depth, marble);
+            if (stopped) {
+                break;
+            }
+            completedDepth = depth;
+            bestScore = score;
+            previousPvLength = pvLength[0];
+            System.arraycopy(pv[0], 0, previousPv, 0, previousPvLength);
+            //a forced win or loss will not change with a deeper search
+            if (Math.abs(score) >= WIN_BOUND) {
+                break;
+            }
+        }
+        rememberPv(root, marble);
+        return bestMove;
+    }
+
+    /**
+     * Searches a single root move to the given depth, for a search that splits the root
+     * moves over several searchers. The window is (alpha, INFINITY), so a score at or below
+     * alpha only tells that the move is not better than alpha. The search uses and fills the
+     * table, but not the principal variation of an earlier search.
+     *
+     * @param root   the board we search, it is not changed
+     * @param marble the marble that moves first
+     * @param move   the code of the root move
+     * @param depth  the depth of the search including the root move
+     * @param alpha  the score the marble is already guaranteed by other moves
+     * @param limits the deadline, the node budget of this searcher and the cancellation
+     * @return the score of the move for the marble, meaningless if isStopped returns true
+     */
+    //@ requires depth >= 1 && root.checkMove(Move.index(move), Move.rotation(move));
+    int searchMove(Board root, Marble marble, int move, int depth, int alpha,
+                   SearchLimits limits) {
+        start(root, limits);
+        followPv = false;
+        previousPvLength = 0;
+        evaluator.makeMove(board, Move.index(move), Move.rotation(move), marble);
+        int score = -negamax(depth - 1, 1, -INFINITY, -alpha, marble.other());
+        evaluator.unmakeMove(board, Move.index(move), Move.rotation(move));
+        return score;
+    }
+
+    /**
+     * Sets up the board, the limits and the statistics of a new search.
+     *
+     * @param root   the board we search, it is copied
+     * @param limits the deadline, the node budget of this searcher and the cancellation
+     */
+    private void start(Board root, SearchLimits limits) {
+        board = root.copy();
+        evaluator.reset(board);
+        this.limits = limits;
+        maxNodes = limits.getNodes();
+        nodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        //the killers of the previous search belong to other plies, its history still helps
+        for (int[] killer : killers) {
+            killer[0] = TranspositionTable.NO_MOVE;
+            killer[1] = TranspositionTable.NO_MOVE;
+        }
+        ageHistory();
+    }
+
+    /**
+     * Keeps the principal variation of the previous search when the root is a position
+     * it predicted one or two plies later, so its remaining moves are searched first again.
+     *
+     * @param root the board of the new search
+     * @return whether the previous principal variation was kept
+     */
+    private boolean carryPv(Board root) {
+        int distance = root.getPlies() - searchedPlies;
+        if (distance < 1 || distance >= expectedKeys.length || previousPvLength <= distance
+                || root.hash() != expectedKeys[distance]) {
+            previousPvLength = 0;
+            return false;
+        }
+        previousPvLength -= distance;
+        System.arraycopy(previousPv, distance, previousPv, 0, previousPvLength);
+        return true;
+    }
+
+    /**
+     * Computes the positions the principal variation of the finished search expects after
+     * its first move and after the predicted reply.
+     *
+     * @param root   the board of the finished search
+     * @param marble the marble that moved at the root
+     */
+    private void rememberPv(Board root, Marble marble) {
+        searchedPlies = root.getPlies();
+        Board expected = root.copy();
+        Marble toMove = marble;
+        for (int i = 1; i < expectedKeys.length; i++) {
+            if (i > previousPvLength) {
+                expectedKeys[i] = 0;
+                continue;
+            }
+            expected.makeMove(Move.index(previousPv[i - 1]), Move.rotation(previousPv[i - 1]),
+                    toMove);
+            expectedKeys[i] = expected.hash();
+            toMove = toMove.other();
+        }
+    }
+
+    /**
+     * Searches every root move to the given depth. The best move of the previous
+     * iteration is searched first, so a partly searched iteration still gives a
+     * move at least as good as the previous one.
+     *
+     * @param depth  the depth of this iteration
+     * @param marble the marble that moves at the root
+     * @return the score of the best root move
+     */
+    private int searchRoot(int depth, Marble marble) {
+        MoveList rootMoves = moves[0];
+        int first = rootMoves.indexOf(bestMove);
+        for (int i = first; i > 0; i--) {
+            rootMoves.swap(i, i - 1);
+        }
+        followPv = true;
+        int alpha = -INFINITY;
+        for (int i = 0; i < rootMoves.size(); i++) {
+            int move = rootMoves.get(i);
+            evaluator.makeMove(board, Move.index(move), Move.rotation(move), marble);
+            int score = -negamax(depth - 1, 1, -INFINITY, -alpha, marble.other());
+            evaluator.unmakeMove(board, Move.index(move), Move.rotation(move));
+            if (stopped) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+                updatePv(0, move);
+            }
+        }
+        return alpha;
+    }
+
+    /**
+     * Searches the current board with negamax and alpha-beta pruning.
+     *
+     * @param depth  the remaining depth
+     * @param ply    the distance from the root
+     * @param alpha  the score the side to move is already guaranteed
+     * @param beta   the score the opponent is already guaranteed, negated
+     * @param marble the marble to move
+     * @return the score of the board for the marble to move
+     */
+    private int negamax(int depth, int ply, int alpha, int beta, Marble marble) {
+        pvLength[ply] = ply;
+        if ((++nodes & CHECK_INTERVAL) == 0
+                && (limits.isExpired() || nodes >= maxNodes)) {
+            stopped = true;
+        }
+        if (board.hasWinner()) {
+            return board.getWinner() == marble ? WIN - ply : -(WIN - ply);
+        }
+        if (board.isFull()) {
+            return 0;
+        }
+        if (depth == 0) {
+            return evaluator.evaluate(marble);
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        long key = key(marble);
+        long entry = table.probe(key);
+        int tableMove = TranspositionTable.NO_MOVE;
+        if (entry != 0) {
+            tableMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        MoveList list = moves[ply];
+        generator.generate(board, marble, list);
+        //the principal variation of the previous iteration is searched first,
+        //otherwise the best move stored in the table
+        int first = tableMove;
+        if (followPv) {
+            first = ply < previousPvLength ? previousPv[ply] : TranspositionTable.NO_MOVE;
+            if (list.indexOf(first) < 0) {
+                followPv = false;
+                first = tableMove;
+            }
+        }
+        int[] order = scores[ply];
+        scoreMoves(list, order, ply, marble, first);
+
+        int alphaOriginal = alpha;
+        int bestMoveHere = tableMove;
+        int best = -INFINITY;
+        for (int i = 0; i < list.size(); i++) {
+            if (i < SELECTED_MOVES) {
+                selectNext(list, order, i);
+            }
+            int move = list.get(i);
+            evaluator.makeMove(board, Move.index(move), Move.rotation(move), marble);
+            int value = -negamax(depth - 1, ply + 1, -beta, -alpha, marble.other());
+            evaluator.unmakeMove(board, Move.index(move), Move.rotation(move));
+            followPv = false;
+            if (stopped) {
+                return 0;
+            }
+            if (value > best) {
+                best = value;
+                if (value > alpha) {
+                    alpha = value;
+                    bestMoveHere = move;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {
+                        cutoffs++;
+                        if (i == 0) {
+                            firstMoveCutoffs++;
+                        }
+                        if (order[i] != WIN_SCORE) {
+                            rememberCutoff(move, ply, depth, marble);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > alphaOriginal ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, depth, bound, toTable(best, ply), bestMoveHere);
+        return best;
+    }
+
+    /**
+     * Scores the moves of a node for the move ordering.
+     *
+     * @param list   the moves of the node
+     * @param score  the array the scores are written to
+     * @param ply    the distance of the node from the root
+     * @param marble the marble to move
+     * @param first  the move searched first, or NO_MOVE
+     */
+    private void scoreMoves(MoveList list, int[] score, int ply, Marble marble, int first) {
+        ThreatAnalyzer.threats(board, marble, wins);
+        long blocks = ThreatAnalyzer.threats(board, marble.other(), opponentWins);
+        int[] killer = killers[ply];
+        int colour = marble == Marble.BLACK ? 0 : Move.COUNT;
+        for (int i = 0; i < list.size(); i++) {
+            int move = list.get(i);
+            long bit = 1L << Move.index(move);
+            if (move == first) {
+                score[i] = FIRST_SCORE;
+            } else if ((wins[Move.rotation(move)] & bit) != 0) {
+                score[i] = WIN_SCORE;
+            } else if ((blocks & bit) != 0) {
+                score[i] = BLOCK_SCORE + history[colour + move];
+            } else if (move == killer[0]) {
+                score[i] = KILLER_SCORE + 1;
+            } else if (move == killer[1]) {
+                score[i] = KILLER_SCORE;
+            } else {
+                score[i] = history[colour + move];
+            }
+        }
+    }
+
+    /**
+     * Moves the move with the highest score from the given position on to that position.
+     * Most nodes are cut off after a few moves, so this is cheaper than sorting the list.
+     *
+     * @param list  the moves of the node
+     * @param score the scores of the moves, swapped along
+     * @param i     the position of the next move to search
+     */
+    private static void selectNext(MoveList list, int[] score, int i) {
+        int best = i;
+        for (int j = i + 1; j < list.size(); j++) {
+            if (score[j] > score[best]) {
+                best = j;
+            }
+        }
+        if (best != i) {
+            list.swap(i, best);
+            int s = score[i];
+            score[i] = score[best];
+            score[best] = s;
+        }
+    }
+
+    /**
+     * Makes a move that caused a cutoff a killer of its ply and raises its history score.
+     *
+     * @param move   the code of the move
+     * @param ply    the distance of the node from the root
+     * @param depth  the remaining depth of the node
+     * @param marble the marble that played the move
+     */
+    private void rememberCutoff(int move, int ply, int depth, Marble marble) {
+        int[] killer = killers[ply];
+        if (killer[0] != move) {
+            killer[1] = killer[0];
+            killer[0] = move;
+        }
+        int index = (marble == Marble.BLACK ? 0 : Move.COUNT) + move;
+        history[index] += depth * depth;
+        if (history[index] > HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    /**
+     * Halves all history scores, so recent cutoffs count more than old ones.
+     */
+    private void ageHistory() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+
+    /**
+     * Returns the key of the current board with the marble to move.
+     *
+     * @param marble the marble to move
+     * @return the key used in the transposition table
+     */
+    private long key(Marble marble) {
+        return marble == Marble.WHITE ? board.hash() ^ WHITE_TO_MOVE : board.hash();
+    }
+
+    /**
+     * Converts a score to the form stored in the table. Winning scores count the
+     * plies from the root, in the table they count the plies from the stored position.
+     *
+     * @param score the score relative to the root
+     * @param ply   the distance of the position from the root
+     * @return the score relative to the position
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score + ply;
+        } else if (score <= -WIN_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Converts a score read from the table back to a score relative to the root.
+     *
+     * @param score the score relative to the stored position
+     * @param ply   the distance of the position from the root
+     * @return the score relative to the root
+     */
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score - ply;
+        } else if (score <= -WIN_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Stores the move followed by the principal variation of the next ply
+     * as the principal variation of the given ply.
+     *
+     * @param ply  the ply of the move
+     * @param move the code of the move
+     */
+    private void updatePv(int ply, int move) {
+        pv[ply][ply] = move;
+        int length = Math.max(pvLength[ply + 1], ply + 1);
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, length - ply - 1);
+        pvLength[ply] = length;
+    }
+
+    /**
+     * Returns whether the last search was stopped before it finished.
+     *
+     * @return whether stop was called or a limit was reached
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Returns the number of nodes searched by the last search.
+     *
+     * @return the node count
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of nodes of the last search that were cut off.
+     *
+     * @return the number of beta cutoffs
+     */
+    long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Returns the number of nodes of the last search that were cut off by the first move
+     * searched, which is higher the better the moves are ordered.
+     *
+     * @return the number of beta cutoffs by the first move
+     */
+    long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * Returns the depth of the last fully searched iteration.
+     *
+     * @return the completed depth
+     */
+    int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Returns the score of the last fully searched iteration.
+     *
+     * @return the score for the marble that moved at the root
+     */
+    int getBestScore() {
+        return bestScore;
+    }
+}
@@ -3,9 +3,39 @@ package ai;
 import game.Board;
 import game.Marble;
 
-import java.util.Random;
-
 public class SmartStrategy implements Strategy {
+    private static final int SOLVER_TABLE_BITS = 16;
+    private static final int PROOF_TABLE_MEGABYTES = 8;
+    private static final int MATE_PLIES = 5;
+    private static final int MATE_NODES = 10000;
+    private static final int BLOCK_PLIES = 3;
+    private static final long BLOCK_NODES = 5000;
+    private static final int SAFE_TRIES = 32;
+    private final ThreatAnalyzer threats = new ThreatAnalyzer();
+    private final EndgameSolver solver = new EndgameSolver(SOLVER_TABLE_BITS);
+    private final ProofNumberSearch prover =
+            new ProofNumberSearch(new ProofTable(PROOF_TABLE_MEGABYTES));
+    private final Playout playout;
+    //the limits of the running search, cancelled by cancel
+    private volatile SearchLimits limits;
+
+    /**
+     * Creates the strategy with a random generator seeded from the clock.
+     */
+    public SmartStrategy() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * Creates the strategy with a random generator with the given seed,
+     * so the same seed gives the same moves.
+     *
+     * @param seed the seed of the random generator
+     */
+    public SmartStrategy(long seed) {
+        playout = new Playout(seed);
+    }
+
     /**
      * Determines a move by using a strategy.
      *
@@ -15,54 +45,79 @@ public class SmartStrategy implements Strategy {
      */
     @Override
     public Move determineMove(Board board, Marble marble) {
+        return determineMove(board, marble, SearchLimits.none());
+    }
+
+    /**
+     * Determines a move by using a strategy. When the deadline passes or the search is
+     * cancelled while looking for forced wins, a random move is returned instead, but a
+     * win of the opponent at once is still blocked.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @param limits the deadline of the search, the node budget is not used
+     * @return a move determined by a strategy
+     */
+    @Override
+    public synchronized Move determineMove(Board board, Marble marble, SearchLimits limits) {
+        this.limits = limits;
         Move move;
         //first the method check whether the field 7, 10, 25 and 28
         // are empty, if yes a move containing this index is returned.
         if (!board.gameOver()) {
             if (board.getField(7).equals(Marble.EMPTY)) {
-                return new Move(7, 0);
+                return Move.of(7, 0);
             }
 
             if (board.getField(10).equals(Marble.EMPTY)) {
-                return new Move(10, 0);
+                return Move.of(10, 0);
             }
 
             if (board.getField(25).equals(Marble.EMPTY)) {
-                return new Move(25, 0);
+                return Move.of(25, 0);
             }
 
             if (board.getField(28).equals(Marble.EMPTY)) {
-                return new Move(28, 0);
+                return Move.of(28, 0);
             }
-            //the method checks whether there is a winning move for the
-            // marble parameter and in case there is, it is returned
-            move = check(board, marble);
-            if (move != null) {
-                return move;
+            //with few empty fields left the game is solved exactly
+            if (EndgameSolver.empties(board) <= EndgameSolver.DEFAULT_EMPTIES) {
+                return Move.of(solver.bestMove(board.copy(), marble));
             }
-
-            move = check(board, marble.other());
-
+            //the threat analyzer looks for a move that wins at once, and then for a win
+            //forced by threats within a few moves
+            Board copy = board.copy();
+            int code = threats.forcedWin(copy, marble, ThreatAnalyzer.DEFAULT_PLIES,
+                    ThreatAnalyzer.DEFAULT_NODES);
+            if (code >= 0) {
+                return Move.of(code);
+            }
+            //a win of the opponent at once is blocked before the proof-number search, which
+            //may use up the deadline, and even when the deadline has passed. Looking for it
+            //costs one move generation.
+            if (threats.winningMove(copy, marble.other()) >= 0) {
+                code = threats.defend(copy, marble, 1, BLOCK_NODES);
+                if (code >= 0) {
+                    return Move.of(code);
+                }
+            }
+            //a win forced within a few moves is looked for with a proof-number search,
+            //a proven move wins against every defence, also against a threat of the opponent
+            move = mate(board, marble, limits);
             if (move != null) {
                 return move;
             }
-            //if all the cases were false, in the end
-            // the method generates a random move
-
-            //registers in an array all the indexes of empty fields.
-            int[] ar = new int[36];
-            int c = 0;
-            for (int i = 0; i < 36; i++) {
-                if (board.getField(i).equals(Marble.EMPTY)) {
-                    ar[c] = i;
-                    c++;
+            //if the opponent can force a win, a move that stops it is played
+            if (!limits.isExpired()
+                    && threats.forcedWin(copy, marble.other(), BLOCK_PLIES, BLOCK_NODES) >= 0) {
+                code = threats.defend(copy, marble, BLOCK_PLIES, BLOCK_NODES);
+                if (code >= 0) {
+                    return Move.of(code);
                 }
             }
-            //choose random rotation and random index from the empty indexes
-            int index = new Random().nextInt(c);
-            int rotation = new Random().nextInt(8);
-
-            return new Move(ar[index], rotation);
+            //if all the cases were false, in the end
+            // the method generates a random move that leaves the opponent no win at once
+            return safeRandomMove(copy, marble);
         } else {
             return null;
         }
@@ -70,25 +125,52 @@ public class SmartStrategy implements Strategy {
     }
 
     /**
-     * Checks whether there is a winning move for the marble parameter. If yes, it returns the move.
-     * Otherwise, it returns null.
+     * Stops looking for forced wins, the running determineMove then returns a random move.
+     */
+    @Override
+    public void cancel() {
+        SearchLimits running = limits;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    /**
+     * Looks for a win of the marble that is forced within MATE_PLIES plies.
      *
      * @param board  the board that the game takes place on
      * @param marble the marble for which we generate the move
-     * @return the winning move or null in case there is no winning move
+     * @param limits the deadline of the search
+     * @return the first move of the forced win, or null if none was proven
      */
-    private Move check(Board board, Marble marble) {
-        for (int i = 0; i < 36; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (board.checkMove(i, j)) {
-                    Board copy = board.copy();
-                    copy.processMove(i, j, marble);
-                    if (copy.isWinner(marble)) {
-                        return new Move(i, j);
-                    }
-                }
+    private Move mate(Board board, Marble marble, SearchLimits limits) {
+        if (limits.isCancelled()) {
+            return null;
+        }
+        int result = prover.solve(board.copy(), marble, MATE_PLIES, limits.withNodes(MATE_NODES));
+        return result == ProofNumberSearch.PROVEN ? Move.of(prover.getBestMove()) : null;
+    }
+
+    /**
+     * Returns a random move after which the opponent cannot win at once. When SAFE_TRIES
+     * random moves all allow a win, the last of them is returned.
+     *
+     * @param board  the board that the game takes place on, it is restored before returning
+     * @param marble the marble for which we generate the move
+     * @return a random move
+     */
+    private Move safeRandomMove(Board board, Marble marble) {
+        int code = playout.randomMove(board);
+        for (int i = 1; i < SAFE_TRIES; i++) {
+            board.makeMove(Move.index(code), Move.rotation(code), marble);
+            boolean safe = board.gameOver() ? board.getWinner() != marble.other()
+                    : threats.winningMove(board, marble.other()) < 0;
+            board.unmakeMove(Move.index(code), Move.rotation(code));
+            if (safe) {
+                break;
             }
+            code = playout.randomMove(board);
         }
-        return null;
+        return Move.of(code);
     }
 }
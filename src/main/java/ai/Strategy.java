@@ -3,7 +3,10 @@ package ai;
 import game.Board;
 import game.Marble;
 
-public interface Strategy {
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+public interface Strategy extends AutoCloseable {
     /**
      * Determines the move for the board and marble parameters.
      *
@@ -13,4 +16,59 @@ public interface Strategy {
      */
     Move determineMove(Board board, Marble marble);
 
+    /**
+     * Determines the move for the board and marble parameters within the given limits.
+     * When a limit is reached the best move found so far is returned. Strategies that
+     * always answer at once ignore the limits, which is what this default does.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @param limits the deadline and node budget of the search
+     * @return a generated move, or null if the game is over
+     */
+    default Move determineMove(Board board, Marble marble, SearchLimits limits) {
+        return determineMove(board, marble);
+    }
+
+    /**
+     * Stops the search that is running by cancelling its limits, and it then returns the
+     * best move found so far. Does nothing if no search is running. A caller that runs
+     * several searches at once cancels the limits of a single one instead.
+     */
+    default void cancel() {
+    }
+
+    /**
+     * Stops the threads of the strategy. The strategy cannot be used afterwards.
+     * Strategies without threads of their own keep this default, which does nothing.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Determines the move on another thread. The board is copied first, so the caller may
+     * change it while the search runs. The search gets a copy of the limits, and
+     * cancelling the future cancels that copy, which stops this search even when it
+     * still waits for another search of the strategy to end.
+     *
+     * @param board  the board that the game takes place on
+     * @param marble the marble for which we generate the move
+     * @param limits the deadline and node budget of the search
+     * @return a future that completes with the move
+     */
+    default CompletableFuture<Move> determineMoveAsync(Board board, Marble marble,
+                                                       SearchLimits limits) {
+        Board copy = board.copy();
+        SearchLimits own = limits.copy();
+        CompletableFuture<Move> future =
+                CompletableFuture.supplyAsync(() -> determineMove(copy, marble, own));
+        future.whenComplete((move, error) -> {
+            if (error instanceof CancellationException) {
+                own.cancel();
+            }
+        });
+        return future;
+    }
+
 }
@@ -0,0 +1,327 @@
+package ai;
+
+import game.Board;
+import game.Marble;
+
+public class ThreatAnalyzer {
+    //A move wins when the winning line it completes is there after the rotation. Instead of
+    //trying the moves, every winning line is turned back with the inverse of each of the 8
+    //rotations: a marble owning all fields of such a preimage but one empty field wins by
+    //placing on that field and rotating, and owning all of them wins with that rotation and
+    //any field. The preimages are fixed, so all threats of a marble take 256 mask tests.
+    //
+    //Forced wins are found with a threat-space search: the attacker only plays moves that
+    //leave it a winning move, and every reply of the defender is tried, the replies on the
+    //threatened fields first. A found win is therefore forced, but a win that starts with a
+    //quiet move is not found.
+    public static final int DEFAULT_PLIES = 5;
+    public static final long DEFAULT_NODES = 20000;
+    private static final int LINES = Board.WINNING_LINE_COUNT;
+    private static final long[] PREIMAGES = createPreimages();
+
+    private final MoveGenerator generator;
+    private final MoveList[] moves;
+    private final int[][] scores;
+    private final long[] fields;
+    private long nodes;
+    private long maxNodes;
+
+    /**
+     * Creates an analyzer with the move lists it needs for a search.
+     */
+    public ThreatAnalyzer() {
+        generator = new MoveGenerator();
+        moves = new MoveList[Searcher.MAX_PLY + 1];
+        scores = new int[moves.length][Move.COUNT];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = new MoveList();
+        }
+        fields = new long[8];
+    }
+
+    /**
+     * Fills, for every rotation, the fields on which the marble wins with that rotation.
+     * When a rotation completes a line for both marbles black wins, so white gets no
+     * fields for a rotation that completes a line of black.
+     *
+     * @param board  the board of the position
+     * @param marble the marble that moves
+     * @param wins   the array the fields are written to, indexed by rotation
+     * @return the union of the fields written to wins
+     */
+    //@ requires wins.length == 8 && marble != Marble.EMPTY;
+    public static long threats(Board board, Marble marble, long[] wins) {
+        long own = board.bits(marble);
+        long empty = board.bits(Marble.EMPTY);
+        long black = board.bits(Marble.BLACK);
+        long all = 0;
+        for (int r = 0; r < 8; r++) {
+            long found = 0;
+            if (marble == Marble.WHITE && completes(black, r)) {
+                wins[r] = 0;
+                continue;
+            }
+            for (int l = r * LINES; l < (r + 1) * LINES; l++) {
+                long missing = PREIMAGES[l] & ~own;
+                if (missing == 0) {
+                    found = empty;
+                    break;
+                }
+                if ((missing & (missing - 1)) == 0) {
+                    found |= missing & empty;
+                }
+            }
+            wins[r] = found;
+            all |= found;
+        }
+        return all;
+    }
+
+    /**
+     * Returns whether the marbles complete a line with the rotation, whatever field is set.
+     *
+     * @param bits   the bitboard of the marbles
+     * @param rotate the rotation
+     * @return whether the marbles own all fields of a preimage of the rotation
+     */
+    private static boolean completes(long bits, int rotate) {
+        for (int l = rotate * LINES; l < (rotate + 1) * LINES; l++) {
+            if ((PREIMAGES[l] & ~bits) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of fields on which the marble wins with a single move.
+     *
+     * @param board  the board of the position
+     * @param marble the marble that moves
+     * @return the number of threatened fields
+     */
+    public int countThreats(Board board, Marble marble) {
+        return Long.bitCount(threats(board, marble, fields));
+    }
+
+    /**
+     * Returns a move that wins at once.
+     *
+     * @param board  the board of the position, it is restored before returning
+     * @param marble the marble that moves
+     * @return the code of the winning move, or -1 if there is none
+     */
+    public int winningMove(Board board, Marble marble) {
+        if (threats(board, marble, fields) == 0) {
+            return -1;
+        }
+        for (int r = 0; r < 8; r++) {
+            long candidates = fields[r];
+            while (candidates != 0) {
+                int field = Long.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+                //the opponent can complete a line with the same rotation, the board decides
+                board.makeMove(field, r, marble);
+                boolean won = board.getWinner() == marble;
+                board.unmakeMove(field, r);
+                if (won) {
+                    return Move.encode(field, r);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Looks for a win of the marble that is forced within the given number of plies.
+     * Shorter wins are looked for first, so the budget is not used up on long lines
+     * before a short win is found.
+     *
+     * @param board    the board of the position, it is restored before returning
+     * @param marble   the marble that moves, the attacker
+     * @param plies    the number of plies the win has to be reached in, counting both marbles
+     * @param maxNodes the number of positions the search may visit
+     * @return the code of the first move of a forced win, or -1 if none was found
+     */
+    //@ requires plies > 0 && maxNodes > 0;
+    public int forcedWin(Board board, Marble marble, int plies, long maxNodes) {
+        nodes = 0;
+        this.maxNodes = maxNodes;
+        int win = -1;
+        for (int depth = 1; depth <= plies && win < 0 && nodes < maxNodes; depth += 2) {
+            win = attack(board, marble, depth, 0);
+        }
+        return win;
+    }
+
+    /**
+     * Looks for a move after which the opponent has no win forced within the given number
+     * of plies. Moves that leave the opponent fewer threats are tried first.
+     *
+     * @param board    the board of the position, it is restored before returning
+     * @param marble   the marble that moves, the defender
+     * @param plies    the number of plies of the opponent's wins we look for
+     * @param maxNodes the number of positions the search may visit
+     * @return the code of a defending move, or -1 if no move stops every forced win found
+     */
+    //@ requires plies > 0 && maxNodes > 0;
+    public int defend(Board board, Marble marble, int plies, long maxNodes) {
+        nodes = 0;
+        this.maxNodes = maxNodes;
+        Marble opponent = marble.other();
+        MoveList list = moves[0];
+        int[] score = scores[0];
+        int count = generator.generate(board, marble, list);
+        for (int i = 0; i < count; i++) {
+            int move = list.get(i);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            if (board.gameOver()) {
+                //a draw is still a defence, it is tried after every other move
+                Marble winner = board.getWinner();
+                score[i] = winner == marble ? -1
+                        : winner == Marble.EMPTY ? Integer.MAX_VALUE - 1 : Integer.MAX_VALUE;
+            } else {
+                score[i] = Long.bitCount(threats(board, opponent, fields));
+            }
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+        }
+        sort(list, score);
+        for (int i = 0; i < count && score[i] != Integer.MAX_VALUE && nodes < this.maxNodes;
+                i++) {
+            int move = list.get(i);
+            if (score[i] < 0) {
+                return move;
+            }
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            boolean safe = attack(board, opponent, plies, 1) < 0;
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+            if (safe) {
+                return move;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches the moves of the attacker that leave it a threat.
+     *
+     * @param board  the board of the position
+     * @param marble the attacker
+     * @param plies  the number of plies left
+     * @param ply    the distance from the root, which selects the move list
+     * @return the code of a move that forces a win, or -1
+     */
+    private int attack(Board board, Marble marble, int plies, int ply) {
+        nodes++;
+        int win = winningMove(board, marble);
+        if (win >= 0 || plies < 3 || nodes >= maxNodes) {
+            return win;
+        }
+        MoveList list = moves[ply];
+        int[] score = scores[ply];
+        int count = generator.generate(board, marble, list);
+        for (int i = 0; i < count; i++) {
+            int move = list.get(i);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            //a move that ends the game does not win here, or winningMove had found it
+            score[i] = board.gameOver() ? 0 : -Long.bitCount(threats(board, marble, fields));
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+        }
+        //the moves that leave the most threatened fields first, double threats before others
+        sort(list, score);
+        for (int i = 0; i < count && score[i] < 0 && nodes < maxNodes; i++) {
+            int move = list.get(i);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            boolean forced = !refute(board, marble.other(), plies - 1, ply + 1);
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+            if (forced) {
+                return move;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Looks for a reply of the defender after which the attacker has no forced win.
+     *
+     * @param board  the board of the position
+     * @param marble the defender
+     * @param plies  the number of plies left
+     * @param ply    the distance from the root, which selects the move list
+     * @return whether the defender has such a reply, also when the search ran out of nodes
+     */
+    private boolean refute(Board board, Marble marble, int plies, int ply) {
+        nodes++;
+        if (nodes >= maxNodes || winningMove(board, marble) >= 0) {
+            return true;
+        }
+        Marble attacker = marble.other();
+        long threatened = threats(board, attacker, fields);
+        MoveList list = moves[ply];
+        int count = generator.generate(board, marble, list);
+        //replies on a threatened field first, they are the likely defences
+        int front = 0;
+        for (int i = 0; i < count; i++) {
+            if ((threatened & (1L << Move.index(list.get(i)))) != 0) {
+                list.swap(i, front++);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int move = list.get(i);
+            board.makeMove(Move.index(move), Move.rotation(move), marble);
+            boolean refuted;
+            if (board.gameOver()) {
+                refuted = board.getWinner() != attacker;
+            } else {
+                refuted = attack(board, attacker, plies - 1, ply + 1) < 0;
+            }
+            board.unmakeMove(Move.index(move), Move.rotation(move));
+            if (refuted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the moves by increasing score with an insertion sort, the lists are short.
+     *
+     * @param list  the moves
+     * @param score the scores of the moves, sorted along
+     */
+    private static void sort(MoveList list, int[] score) {
+        for (int i = 1; i < list.size(); i++) {
+            int s = score[i];
+            for (int j = i; j > 0 && score[j - 1] > s; j--) {
+                score[j] = score[j - 1];
+                score[j - 1] = s;
+                list.swap(j, j - 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of positions visited by the last search.
+     *
+     * @return the node count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Builds the preimages of all winning lines under all rotations: the fields a marble
+     * needs before a rotation to own the line after it.
+     *
+     * @return the masks indexed by rotation * WINNING_LINE_COUNT + line
+     */
+    private static long[] createPreimages() {
+        long[] preimages = new long[8 * LINES];
+        for (int r = 0; r < 8; r++) {
+            for (int l = 0; l < LINES; l++) {
+                preimages[r * LINES + l] = Board.rotate(Board.getWinningLine(l), r ^ 1);
+            }
+        }
+        return preimages;
+    }
+}
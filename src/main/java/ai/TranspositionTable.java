@@ -0,0 +1,539 @@
+package ai;
+
+import game.Board;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+public class TranspositionTable {
+    //Every entry takes two longs: the key XOR the data, and the data. A reader only accepts
+    //an entry when both halves XOR back to its key, so an entry torn by two threads writing
+    //at the same time is seen as a miss instead of as wrong data, and no locks are needed.
+    //
+    //Layout of the data:
+    //bits 0-8   move code, NO_MOVE when there is no move
+    //bits 9-10  bound
+    //bits 11-18 depth
+    //bits 19-26 generation
+    //bits 32-63 score
+    //
+    //The entries are grouped in buckets of two. The first entry of a bucket is only replaced
+    //by a search that is at least as deep or by any search of a newer generation, the second
+    //one is always replaced. The generation is increased once per move, so the entries of
+    //earlier moves of a game are still found but do not block the deep slots forever.
+    //A bucket holds a position at most once. A new result of a stored position replaces it
+    //in its slot, unless the stored entry is deeper and current and the new one only a bound.
+    //
+    //A table can also live in a file that is mapped into memory, so it is kept between runs
+    //and shared by all processes mapping the same file. The entries are written the same way,
+    //so an entry torn by two processes, or by a crash before the file was written back, is a
+    //miss as well. The file starts with a header of HEADER_BYTES, in little endian:
+    //bytes 0-3   MAGIC
+    //bytes 4-7   VERSION
+    //bytes 8-15  number of entries
+    //bytes 16-23 the hash of a fixed board, so files of other Zobrist keys are not used
+    //bytes 24-31 CRC-32 of bytes 0-23
+    //bytes 32-39 generation, shared by the processes
+    //A file with an invalid header is emptied when it is opened. Files are only made larger,
+    //never smaller, so a process never loses the part of the file it has mapped.
+    //
+    //Every process sharing a file takes its own generation from the shared counter, so the
+    //processes searching at the same time hold different generations. In a file an entry
+    //therefore only counts as old once it is STALE_AGE generations behind, and an entry of
+    //a generation ahead, written by a process that started its search later, as current.
+    public static final String PROPERTY = "pentago.tt";
+    public static final int UPPER = 1;
+    public static final int LOWER = 2;
+    public static final int EXACT = 3;
+    public static final int NO_MOVE = 511;
+    public static final int DEFAULT_MEGABYTES = 32;
+    private static final int ENTRY_BYTES = 16;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle FILE_SLOTS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    static final int MAGIC = 0x50545431;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    private static final int GENERATION_OFFSET = 32;
+    private static final int STALE_AGE = 32;
+    //a mapped buffer holds at most Integer.MAX_VALUE bytes
+    private static final long MAX_FILE_ENTRIES = 1L << 26;
+    private static TranspositionTable defaultTable;
+    private static boolean defaultLoaded;
+    private static IOException defaultError;
+
+    private final long[] table;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private final int bucketMask;
+    private final LongAdder probes;
+    private final LongAdder hits;
+    private final LongAdder stores;
+    private volatile int generation;
+
+    /**
+     * Creates a table with the default size.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_MEGABYTES);
+    }
+
+    /**
+     * Creates a table of at most the given size. The number of entries is rounded
+     * down to a power of two, so an index is the key masked with the bucket mask.
+     *
+     * @param megabytes the maximum memory used by the table
+     */
+    //@ requires megabytes > 0;
+    public TranspositionTable(int megabytes) {
+        long entries = Math.min(entries(megabytes), 1L << 27);
+        table = new long[(int) entries * 2];
+        buffer = null;
+        slots = table.length;
+        bucketMask = (int) (entries / 2) - 1;
+        probes = new LongAdder();
+        hits = new LongAdder();
+        stores = new LongAdder();
+    }
+
+    /**
+     * Opens the table stored in the given file, which is mapped into memory, so what is
+     * stored is kept in the file and seen by every process that opened it. A file that does
+     * not exist or has no valid header is made a new empty table of at most the given size,
+     * a valid file keeps its size.
+     *
+     * @param path      the path of the table file
+     * @param megabytes the maximum size of the entries of a new table
+     * @throws IOException if the file cannot be read, written or locked
+     */
+    //@ requires megabytes > 0;
+    public TranspositionTable(Path path, int megabytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            //the header is checked and written by one process at a time
+            FileLock lock = channel.lock();
+            try {
+                long entries = readEntries(channel);
+                boolean valid = entries > 0;
+                if (!valid) {
+                    entries = Math.min(entries(megabytes), MAX_FILE_ENTRIES);
+                }
+                long size = HEADER_BYTES + entries * ENTRY_BYTES;
+                boolean empty = channel.size() == 0;
+                if (channel.size() < size) {
+                    channel.write(ByteBuffer.allocate(1), size - 1);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                if (!valid) {
+                    if (!empty) {
+                        for (int i = HEADER_BYTES; i < size; i += 8) {
+                            buffer.putLong(i, 0L);
+                        }
+                    }
+                    writeHeader(buffer, entries);
+                }
+                table = null;
+                slots = (int) entries * 2;
+                bucketMask = (int) (entries / 2) - 1;
+            } finally {
+                lock.release();
+            }
+        }
+        generation = (int) buffer.getLong(GENERATION_OFFSET) & 255;
+        probes = new LongAdder();
+        hits = new LongAdder();
+        stores = new LongAdder();
+    }
+
+    /**
+     * Returns the table file named by the system property pentago.tt, opened once and
+     * shared by all strategies of the process, or a new table of the default size if the
+     * property is not set or the file cannot be opened. Why the file could not be opened
+     * is kept for getDefaultError.
+     *
+     * @return the table the strategies use by default
+     */
+    public static TranspositionTable getDefault() {
+        TranspositionTable table = loadDefault();
+        return table != null ? table : new TranspositionTable();
+    }
+
+    /**
+     * Returns why the table file named by the system property pentago.tt could not be
+     * opened. The file is opened first if that was not done yet.
+     *
+     * @return the error, or null if the file was opened or the property is not set
+     */
+    public static synchronized IOException getDefaultError() {
+        loadDefault();
+        return defaultError;
+    }
+
+    /**
+     * Opens the table file named by the system property pentago.tt the first time it is
+     * called.
+     *
+     * @return the shared table, or null if the file was not opened
+     */
+    private static synchronized TranspositionTable loadDefault() {
+        if (!defaultLoaded) {
+            defaultLoaded = true;
+            String file = System.getProperty(PROPERTY);
+            if (file != null) {
+                try {
+                    defaultTable = new TranspositionTable(Paths.get(file), DEFAULT_MEGABYTES);
+                } catch (IOException e) {
+                    defaultError = e;
+                }
+            }
+        }
+        return defaultTable;
+    }
+
+    /**
+     * Returns the number of entries of a table of at most the given size, a power of two.
+     *
+     * @param megabytes the maximum memory used by the table
+     * @return the number of entries
+     */
+    private static long entries(int megabytes) {
+        return Long.highestOneBit(Math.max(2L, megabytes * 1024L * 1024L / ENTRY_BYTES));
+    }
+
+    /**
+     * Reads the header of a table file.
+     *
+     * @param channel the channel of the file
+     * @return the number of entries of the file, or 0 if it has no valid header
+     * @throws IOException if the file cannot be read
+     */
+    private static long readEntries(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        long entries = header.getLong(8);
+        boolean valid = header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                && header.getLong(16) == keyCheck() && header.getLong(24) == checksum(header)
+                && entries >= 2 && entries <= MAX_FILE_ENTRIES && Long.bitCount(entries) == 1
+                && channel.size() >= HEADER_BYTES + entries * ENTRY_BYTES;
+        return valid ? entries : 0;
+    }
+
+    /**
+     * Writes the header of a new table file.
+     *
+     * @param header  the buffer starting with the header
+     * @param entries the number of entries of the file
+     */
+    private static void writeHeader(ByteBuffer header, long entries) {
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putLong(8, entries);
+        header.putLong(16, keyCheck());
+        header.putLong(24, checksum(header));
+        header.putLong(GENERATION_OFFSET, 0L);
+    }
+
+    /**
+     * Returns the CRC-32 of the fields of a header before the checksum.
+     *
+     * @param header the buffer starting with the header
+     * @return the checksum
+     */
+    private static long checksum(ByteBuffer header) {
+        CRC32 crc = new CRC32();
+        crc.update(header.duplicate().position(0).limit(24));
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the hash of a fixed board, which changes when the Zobrist keys change.
+     *
+     * @return the hash of a board with a black marble on field 0 and a white one on field 1
+     */
+    private static long keyCheck() {
+        return Board.fromBits(1L, 2L).hash();
+    }
+
+    /**
+     * Reads a long of the table.
+     *
+     * @param index the index of the long
+     * @return the value
+     */
+    private long get(int index) {
+        if (buffer == null) {
+            return (long) SLOTS.getOpaque(table, index);
+        }
+        return (long) FILE_SLOTS.getOpaque(buffer, HEADER_BYTES + index * 8);
+    }
+
+    /**
+     * Writes a long of the table.
+     *
+     * @param index the index of the long
+     * @param value the value
+     */
+    private void set(int index, long value) {
+        if (buffer == null) {
+            SLOTS.setOpaque(table, index, value);
+        } else {
+            FILE_SLOTS.setOpaque(buffer, HEADER_BYTES + index * 8, value);
+        }
+    }
+
+    /**
+     * Returns the position in the table of the first entry of the bucket of the key.
+     *
+     * @param key the hash of the position
+     * @return the index of the first long of the bucket
+     */
+    private int bucket(long key) {
+        return ((int) key & bucketMask) << 2;
+    }
+
+    /**
+     * Looks up the entry of the given key.
+     *
+     * @param key the hash of the position
+     * @return the data of the entry, or 0 if the table has no entry for the key
+     */
+    public long probe(long key) {
+        probes.increment();
+        int index = bucket(key);
+        for (int i = index; i < index + 4; i += 2) {
+            long data = get(i + 1);
+            if ((get(i) ^ data) == key && data != 0) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores the result of a search of the given position.
+     *
+     * @param key   the hash of the position
+     * @param depth the depth of the search
+     * @param bound UPPER, LOWER or EXACT, depending on how the score relates to the window
+     * @param score the score of the position
+     * @param move  the code of the best move, or NO_MOVE
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        stores.increment();
+        int current = generation;
+        long data = ((long) score << 32) | ((long) current << 19)
+                | ((long) Math.min(depth, 255) << 11) | ((long) bound << 9) | (move & NO_MOVE);
+        int index = bucket(key);
+        long first = get(index + 1);
+        boolean deepSlot = first == 0 || isStale(first, current) || depth >= depth(first);
+        for (int i = index; i < index + 4; i += 2) {
+            long old = get(i + 1);
+            if (old == 0 || (get(i) ^ old) != key) {
+                continue;
+            }
+            if (bound != EXACT && depth < depth(old) && !isStale(old, current)) {
+                return;
+            }
+            if (i != index && deepSlot) {
+                //the position moves up to the deep slot, its old entry is emptied
+                write(i, 0L, 0L);
+                write(index, key, data);
+            } else {
+                write(i, key, data);
+            }
+            return;
+        }
+        write(deepSlot ? index : index + 2, key, data);
+    }
+
+    /**
+     * Returns whether an entry is from an earlier search, so it may be replaced by any
+     * search. In a table file, generations up to half the range ahead count as current.
+     *
+     * @param data    the data of the entry
+     * @param current the generation of the running search
+     * @return whether the entry is old
+     */
+    private boolean isStale(long data, int current) {
+        if (buffer == null) {
+            return generation(data) != current;
+        }
+        int age = (current - generation(data)) & 255;
+        return age >= STALE_AGE && age < 128;
+    }
+
+    /**
+     * Writes both halves of an entry.
+     *
+     * @param index the index of the first long of the entry
+     * @param key   the hash of the position
+     * @param data  the packed data of the entry
+     */
+    private void write(int index, long key, long data) {
+        set(index, key ^ data);
+        set(index + 1, data);
+    }
+
+    /**
+     * Starts a new generation. Called once before the search of every move, the entries
+     * of earlier searches stay in the table but are replaced first. The processes sharing
+     * a table file share its generation, so each of them starts a new one for all.
+     */
+    public void newSearch() {
+        if (buffer == null) {
+            generation = (generation + 1) & 255;
+        } else {
+            generation = (int) ((long) FILE_SLOTS.getAndAdd(buffer, GENERATION_OFFSET, 1L) + 1)
+                    & 255;
+        }
+    }
+
+    /**
+     * Empties the table and resets the statistics. A table file is emptied for every
+     * process sharing it.
+     */
+    public void clear() {
+        for (int i = 0; i < slots; i++) {
+            set(i, 0L);
+        }
+        if (buffer != null) {
+            FILE_SLOTS.setVolatile(buffer, GENERATION_OFFSET, 0L);
+        }
+        generation = 0;
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    /**
+     * Returns the move stored in the data of an entry.
+     *
+     * @param data the data returned by probe
+     * @return the code of the move, or NO_MOVE
+     */
+    public static int move(long data) {
+        return (int) data & NO_MOVE;
+    }
+
+    /**
+     * Returns the bound stored in the data of an entry.
+     *
+     * @param data the data returned by probe
+     * @return UPPER, LOWER or EXACT
+     */
+    public static int bound(long data) {
+        return (int) (data >>> 9) & 3;
+    }
+
+    /**
+     * Returns the depth stored in the data of an entry.
+     *
+     * @param data the data returned by probe
+     * @return the depth of the search that stored the entry
+     */
+    public static int depth(long data) {
+        return (int) (data >>> 11) & 255;
+    }
+
+    /**
+     * Returns the generation of the search that stored an entry.
+     *
+     * @param data the data returned by probe
+     * @return the generation, between 0 and 255
+     */
+    public static int generation(long data) {
+        return (int) (data >>> 19) & 255;
+    }
+
+    /**
+     * Returns the score stored in the data of an entry.
+     *
+     * @param data the data returned by probe
+     * @return the score of the position
+     */
+    public static int score(long data) {
+        return (int) (data >>> 32);
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     *
+     * @return the capacity of the table
+     */
+    public int capacity() {
+        return slots / 2;
+    }
+
+    /**
+     * Returns whether the table is stored in a file.
+     *
+     * @return whether the table is mapped from a file
+     */
+    public boolean isMapped() {
+        return buffer != null;
+    }
+
+    /**
+     * Returns the number of lookups since the table was created or cleared.
+     *
+     * @return the number of probes
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * Returns the number of lookups that found an entry.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of stored entries.
+     *
+     * @return the number of stores
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Returns the share of lookups that found an entry.
+     *
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long p = probes.sum();
+        return p == 0 ? 0 : (double) hits.sum() / p;
+    }
+
+    /**
+     * Returns the statistics of the table in a readable form.
+     *
+     * @return a string with the probes, hits, hit rate and stores
+     */
+    @Override
+    public String toString() {
+        return "probes " + getProbes() + ", hits " + getHits() + " ("
+                + Math.round(getHitRate() * 1000) / 10.0 + "%), stores " + getStores();
+    }
+}
@@ -0,0 +1,167 @@
+package arena;
+
+import ai.Move;
+import ai.Playout;
+import ai.SearchLimits;
+import ai.Strategy;
+import game.Board;
+import game.Game;
+import game.GameResult;
+import game.Marble;
+import game.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+public class Arena {
+    //Plays games between two strategies on a pool of threads. The games are played in
+    //pairs: both games of a pair start with the same random opening and give the
+    //strategies the same seeds, and the first strategy plays black in one and white in
+    //the other, so neither strategy profits from a lucky opening or from moving first.
+    //Every game gets new strategies made from its seeds, so a match with the same seed
+    //plays the same games, whichever thread plays them.
+    public static final int MAX_OPENING_PLIES = 8;
+
+    private final LongFunction<Strategy> first;
+    private final LongFunction<Strategy> second;
+    private final int threads;
+    private final long seed;
+    private final int openingPlies;
+    private final long moveMillis;
+
+    /**
+     * Creates an arena for two strategies.
+     *
+     * @param first        makes the first strategy from a seed
+     * @param second       makes the second strategy from a seed
+     * @param threads      the number of games played at the same time
+     * @param seed         the seed of the openings and of the strategies
+     * @param openingPlies the number of random moves every game starts with
+     * @param moveMillis   the time per move passed to the strategies, or 0 to let them
+     *                     use their own limits
+     */
+    /*@ requires threads >= 1 && openingPlies >= 0 && openingPlies <= MAX_OPENING_PLIES
+          && moveMillis >= 0; @*/
+    public Arena(LongFunction<Strategy> first, LongFunction<Strategy> second, int threads,
+                 long seed, int openingPlies, long moveMillis) {
+        this.first = first;
+        this.second = second;
+        this.threads = threads;
+        this.seed = seed;
+        this.openingPlies = openingPlies;
+        this.moveMillis = moveMillis;
+    }
+
+    /**
+     * Plays the given number of games and counts their results for the first strategy.
+     *
+     * @param games the number of games, an odd number leaves the last pair unfinished
+     * @return the results of the match
+     * @throws InterruptedException if the thread is interrupted while the games are played
+     * @throws ExecutionException   if a game could not be played
+     */
+    //@ requires games >= 0;
+    public ArenaResult play(int games) throws InterruptedException, ExecutionException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] pairSeeds = new long[(games + 1) / 2];
+        for (int i = 0; i < pairSeeds.length; i++) {
+            pairSeeds[i] = random.nextLong();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "arena");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArenaResult result = new ArenaResult();
+        long start = System.nanoTime();
+        try {
+            List<Future<ArenaResult>> futures = new ArrayList<>();
+            for (int i = 0; i < games; i++) {
+                long pairSeed = pairSeeds[i / 2];
+                boolean firstIsBlack = i % 2 == 0;
+                futures.add(pool.submit(() -> playGame(pairSeed, firstIsBlack)));
+            }
+            for (Future<ArenaResult> future : futures) {
+                result.add(future.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        result.setTime(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Plays one game. A strategy that gives no legal move or fails loses the game.
+     *
+     * @param pairSeed     the seed of the pair of games
+     * @param firstIsBlack whether the first strategy plays black
+     * @return the result of the game for the first strategy
+     */
+    private ArenaResult playGame(long pairSeed, boolean firstIsBlack) {
+        SplittableRandom random = new SplittableRandom(pairSeed);
+        Playout opening = new Playout(random.nextLong());
+        long firstSeed = random.nextLong();
+        long secondSeed = random.nextLong();
+        //the strategies are closed after the game, so their threads do not pile up
+        try (Strategy firstStrategy = first.apply(firstSeed);
+             Strategy secondStrategy = second.apply(secondSeed)) {
+            return playGame(opening, firstStrategy, secondStrategy, firstIsBlack);
+        }
+    }
+
+    /**
+     * Plays one game between the given strategies.
+     *
+     * @param opening        plays the random opening moves
+     * @param firstStrategy  the first strategy
+     * @param secondStrategy the second strategy
+     * @param firstIsBlack   whether the first strategy plays black
+     * @return the result of the game for the first strategy
+     */
+    private ArenaResult playGame(Playout opening, Strategy firstStrategy,
+                                 Strategy secondStrategy, boolean firstIsBlack) {
+        Game game = new Game(new Player("black", Marble.BLACK),
+                new Player("white", Marble.WHITE));
+        Board board = game.getBoard();
+        for (int i = 0; i < openingPlies && game.getResult() == null; i++) {
+            int code = opening.randomMove(board);
+            game.registerMove(Move.index(code), Move.rotation(code));
+        }
+        ArenaResult result = new ArenaResult();
+        while (game.getResult() == null) {
+            Marble marble = game.getPlayers()[game.getCurrent()].getMarble();
+            boolean firstToMove = (marble == Marble.BLACK) == firstIsBlack;
+            Strategy strategy = firstToMove ? firstStrategy : secondStrategy;
+            long start = System.nanoTime();
+            Move move;
+            try {
+                move = moveMillis > 0
+                        ? strategy.determineMove(board, marble, SearchLimits.moveTime(moveMillis))
+                        : strategy.determineMove(board, marble);
+            } catch (RuntimeException e) {
+                move = null;
+            }
+            result.addMove(firstToMove, System.nanoTime() - start);
+            if (move == null || !board.checkMove(move.getIndex(), move.getRotation())) {
+                result.addGame(firstToMove ? -1 : 1, true);
+                return result;
+            }
+            game.registerMove(move.getIndex(), move.getRotation());
+        }
+        GameResult end = game.getResult();
+        if (end.isDraw()) {
+            result.addGame(0, false);
+        } else {
+            boolean blackWon = end.getWinner().getMarble() == Marble.BLACK;
+            result.addGame(blackWon == firstIsBlack ? 1 : -1, false);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,201 @@
+package arena;
+
+public class ArenaResult {
+    //The results of a match between two strategies, counted for the first strategy:
+    //a win of the first strategy is a win, a win of the second one a loss.
+    private long wins;
+    private long draws;
+    private long losses;
+    private long forfeits;
+    private long firstMoves;
+    private long firstNanos;
+    private long secondMoves;
+    private long secondNanos;
+    private long nanos;
+
+    /**
+     * Counts one finished game.
+     *
+     * @param outcome 1 for a win of the first strategy, 0 for a draw and -1 for a loss
+     * @param forfeit whether the game was lost by a strategy that gave no legal move
+     */
+    //@ requires outcome >= -1 && outcome <= 1;
+    public void addGame(int outcome, boolean forfeit) {
+        if (outcome > 0) {
+            wins++;
+        } else if (outcome < 0) {
+            losses++;
+        } else {
+            draws++;
+        }
+        if (forfeit) {
+            forfeits++;
+        }
+    }
+
+    /**
+     * Counts the time one strategy took for a move.
+     *
+     * @param first whether the move was made by the first strategy
+     * @param time  the time the move took in nanoseconds
+     */
+    public void addMove(boolean first, long time) {
+        if (first) {
+            firstMoves++;
+            firstNanos += time;
+        } else {
+            secondMoves++;
+            secondNanos += time;
+        }
+    }
+
+    /**
+     * Adds the counts of another result to this result, except for the wall clock time.
+     *
+     * @param other the result that is added
+     */
+    public void add(ArenaResult other) {
+        wins += other.wins;
+        draws += other.draws;
+        losses += other.losses;
+        forfeits += other.forfeits;
+        firstMoves += other.firstMoves;
+        firstNanos += other.firstNanos;
+        secondMoves += other.secondMoves;
+        secondNanos += other.secondNanos;
+    }
+
+    /**
+     * Sets the wall clock time the match took.
+     *
+     * @param time the time in nanoseconds
+     */
+    public void setTime(long time) {
+        nanos = time;
+    }
+
+    /**
+     * Returns the number of games won by the first strategy.
+     *
+     * @return the number of wins
+     */
+    /*@ pure */public long getWins() {
+        return wins;
+    }
+
+    /**
+     * Returns the number of games that ended in a draw.
+     *
+     * @return the number of draws
+     */
+    /*@ pure */public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Returns the number of games lost by the first strategy.
+     *
+     * @return the number of losses
+     */
+    /*@ pure */public long getLosses() {
+        return losses;
+    }
+
+    /**
+     * Returns the number of games decided by a strategy that gave no legal move.
+     *
+     * @return the number of forfeits
+     */
+    /*@ pure */public long getForfeits() {
+        return forfeits;
+    }
+
+    /**
+     * Returns the number of games counted.
+     *
+     * @return the number of games
+     */
+    /*@ pure */public long getGames() {
+        return wins + draws + losses;
+    }
+
+    /**
+     * Returns the average score of the first strategy, counting a win as 1 and a draw
+     * as a half.
+     *
+     * @return the score between 0 and 1, or 0.5 if no game was counted
+     */
+    /*@ pure */public double getScore() {
+        long games = getGames();
+        return games == 0 ? 0.5 : (wins + draws / 2.0) / games;
+    }
+
+    /**
+     * Returns how many Elo points the first strategy is stronger than the second.
+     *
+     * @return the Elo difference, infinite if one strategy won every game
+     */
+    /*@ pure */public double getElo() {
+        return Elo.difference(getScore());
+    }
+
+    /**
+     * Returns the lower bound of the 95% confidence interval of the Elo difference.
+     *
+     * @return the lower bound in Elo points
+     */
+    /*@ pure */public double getEloLow() {
+        return Elo.bound(wins, draws, losses, -Elo.Z_95);
+    }
+
+    /**
+     * Returns the upper bound of the 95% confidence interval of the Elo difference.
+     *
+     * @return the upper bound in Elo points
+     */
+    /*@ pure */public double getEloHigh() {
+        return Elo.bound(wins, draws, losses, Elo.Z_95);
+    }
+
+    /**
+     * Returns the average time the first strategy took per move.
+     *
+     * @return the time in milliseconds, or 0 if it made no move
+     */
+    /*@ pure */public double getFirstMillisPerMove() {
+        return firstMoves == 0 ? 0 : firstNanos / 1e6 / firstMoves;
+    }
+
+    /**
+     * Returns the average time the second strategy took per move.
+     *
+     * @return the time in milliseconds, or 0 if it made no move
+     */
+    /*@ pure */public double getSecondMillisPerMove() {
+        return secondMoves == 0 ? 0 : secondNanos / 1e6 / secondMoves;
+    }
+
+    /**
+     * Returns the number of games played per second of wall clock time.
+     *
+     * @return the games per second, or 0 if the time was not set
+     */
+    /*@ pure */public double getGamesPerSecond() {
+        return nanos == 0 ? 0 : getGames() / (nanos / 1e9);
+    }
+
+    /**
+     * Returns the results as a string.
+     *
+     * @return the wins, draws, losses, Elo difference and speed
+     */
+    @Override
+    public String toString() {
+        return String.format("games %d: wins %d, draws %d, losses %d (forfeits %d), "
+                        + "score %.1f%%%nelo %+.0f [%+.0f, %+.0f] (95%%)%n"
+                        + "ms/move %.2f vs %.2f, %.2f games/s",
+                getGames(), wins, draws, losses, forfeits, 100 * getScore(), getElo(),
+                getEloLow(), getEloHigh(), getFirstMillisPerMove(), getSecondMillisPerMove(),
+                getGamesPerSecond());
+    }
+}
@@ -0,0 +1,75 @@
+package arena;
+
+public class Elo {
+    //The Elo model expects a player that is d points stronger to score
+    //1 / (1 + 10^(-d / 400)) per game, so a score is turned into a difference by inverting
+    //that. The interval of the score is a Wilson score interval with the variance of the
+    //game results, so draws narrow it, turned into differences. Unlike the plain normal
+    //interval it stays inside 0 and 1 and does not shrink to a point when every game has
+    //the same result.
+    public static final double Z_95 = 1.959964;
+
+    private Elo() {
+    }
+
+    /**
+     * Returns the Elo difference that predicts the given score.
+     *
+     * @param score the average score per game, between 0 and 1
+     * @return the difference in Elo points, infinite for a score of 0 or 1
+     */
+    //@ requires score >= 0 && score <= 1;
+    public static double difference(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * Returns the standard error of the average score of the games.
+     *
+     * @param wins   the number of games won
+     * @param draws  the number of games drawn
+     * @param losses the number of games lost
+     * @return the standard error, or 0 if no game was played
+     */
+    //@ requires wins >= 0 && draws >= 0 && losses >= 0;
+    public static double standardError(long wins, long draws, long losses) {
+        long games = wins + draws + losses;
+        if (games == 0) {
+            return 0;
+        }
+        double score = (wins + draws / 2.0) / games;
+        double variance = (wins * (1 - score) * (1 - score)
+                + draws * (0.5 - score) * (0.5 - score)
+                + losses * score * score) / games;
+        return Math.sqrt(variance / games);
+    }
+
+    /**
+     * Returns a bound of the interval of the Elo difference.
+     *
+     * @param wins   the number of games won
+     * @param draws  the number of games drawn
+     * @param losses the number of games lost
+     * @param z      the number of standard errors, negative for the lower bound
+     * @return the bound in Elo points, infinite when the score interval reaches 0 or 1
+     */
+    public static double bound(long wins, long draws, long losses, double z) {
+        long games = wins + draws + losses;
+        if (games == 0) {
+            return z < 0 ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        double score = (wins + draws / 2.0) / games;
+        double error = standardError(wins, draws, losses);
+        double spread = z * z / games;
+        double centre = (score + spread / 2) / (1 + spread);
+        double half = Math.abs(z) * Math.sqrt(error * error + spread / (4 * games))
+                / (1 + spread);
+        return difference(Math.min(1, Math.max(0, z < 0 ? centre - half : centre + half)));
+    }
+}
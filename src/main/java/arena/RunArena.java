@@ -0,0 +1,97 @@
+package arena;
+
+import ai.AlphaBetaStrategy;
+import ai.MctsStrategy;
+import ai.NaiveStrategy;
+import ai.SmartStrategy;
+import ai.Strategy;
+import ai.TranspositionTable;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+public class RunArena {
+    //The strategies are named like the difficulties of the client. The searching ones can
+    //be given a fixed budget after a colon, expert:4 searches 4 plies and mcts:5000 runs
+    //5000 playouts per move, which makes their games independent of the load of the machine.
+    private static final long DEFAULT_SEED = 20240101L;
+    private static final int DEFAULT_OPENING_PLIES = 4;
+    private static final long DEFAULT_MOVE_MILLIS = 100;
+    private static final int TABLE_MEGABYTES = 8;
+    private static final int MCTS_CAPACITY = 1 << 16;
+    private static final long NO_TIME_LIMIT = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Plays a match between two strategies and prints the results for the first one.
+     * Arguments: the two strategies (easy, hard, expert[:depth] or mcts[:playouts]), the
+     * number of games (default 100), the number of games played at the same time (default:
+     * number of processors), the seed, the time per move in milliseconds for the strategies
+     * without a fixed budget (default 100) and the number of random opening moves
+     * (default 4).
+     *
+     * @param args the strategies and the optional arguments
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        if (args.length < 2) {
+            System.out.println("Usage: RunArena first second [games] [threads] [seed]"
+                    + " [ms/move] [opening plies]");
+            System.out.println("Strategies: easy, hard, expert[:depth], mcts[:playouts]");
+            return;
+        }
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED;
+        long moveMillis = args.length > 5 ? Long.parseLong(args[5]) : DEFAULT_MOVE_MILLIS;
+        int openingPlies = args.length > 6 ? Integer.parseInt(args[6]) : DEFAULT_OPENING_PLIES;
+        if (games < 0 || threads < 1 || moveMillis < 1 || openingPlies < 0
+                || openingPlies > Arena.MAX_OPENING_PLIES) {
+            System.out.println("Invalid arguments, the opening has at most "
+                    + Arena.MAX_OPENING_PLIES + " moves");
+            return;
+        }
+        LongFunction<Strategy> first = parseStrategy(args[0], moveMillis);
+        LongFunction<Strategy> second = parseStrategy(args[1], moveMillis);
+        if (first == null || second == null) {
+            System.out.println("Unknown strategy, use easy, hard, expert[:depth] or "
+                    + "mcts[:playouts]");
+            return;
+        }
+
+        System.out.println(args[0] + " vs " + args[1] + ", " + threads + " threads, seed "
+                + seed);
+        ArenaResult result = new Arena(first, second, threads, seed, openingPlies, 0)
+                .play(games);
+        System.out.println(result);
+    }
+
+    /**
+     * Returns the factory of the strategy with the given name.
+     *
+     * @param name       the name of the strategy, with an optional budget after a colon
+     * @param moveMillis the time per move of a strategy without a fixed budget
+     * @return the factory making the strategy from a seed, or null if the name is unknown
+     * @throws NumberFormatException if the budget is not a number
+     */
+    private static LongFunction<Strategy> parseStrategy(String name, long moveMillis) {
+        int colon = name.indexOf(':');
+        String type = colon < 0 ? name : name.substring(0, colon);
+        long budget = colon < 0 ? 0 : Long.parseLong(name.substring(colon + 1));
+        long time = budget > 0 ? NO_TIME_LIMIT : moveMillis;
+        switch (type) {
+            case "easy":
+                return NaiveStrategy::new;
+            case "hard":
+                return SmartStrategy::new;
+            case "expert":
+                int depth = budget > 0 ? (int) budget : Integer.MAX_VALUE;
+                return seed -> new AlphaBetaStrategy(time, depth,
+                        new TranspositionTable(TABLE_MEGABYTES));
+            case "mcts":
+                return seed -> new MctsStrategy(time, budget, 1, MCTS_CAPACITY, seed);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package benchmark;
+
+import ai.DistributedStrategy;
+import ai.RunSearchWorker;
+import game.Board;
+import game.Marble;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class DistributedSearchBenchmark {
+    /**
+     * Measures how long the distributed search needs to reach a fixed depth on the positions
+     * of the parallel search benchmark with 1, 2, 4, ... worker processes on this machine,
+     * and prints the speedup compared to one worker. Every measurement starts new workers,
+     * so their tables are empty.
+     * Arguments: the largest number of workers (default: number of processors),
+     * the depth (default 4) and the table size of every worker in megabytes (default 64).
+     *
+     * @param args the optional arguments
+     */
+    public static void main(String[] args) throws IOException {
+        int maxWorkers = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        List<Board> positions = ParallelSearchBenchmark.createPositions();
+        System.out.println("positions " + positions.size() + ", depth " + depth);
+        System.out.println("workers     time (ms)     nodes/s     speedup");
+        double baseline = 0;
+        for (int count : ParallelSearchBenchmark.threadCounts(maxWorkers)) {
+            List<Process> processes = new ArrayList<>();
+            try {
+                List<InetSocketAddress> addresses = new ArrayList<>();
+                for (int w = 0; w < count; w++) {
+                    Process process = startWorker(megabytes);
+                    processes.add(process);
+                    addresses.add(new InetSocketAddress("localhost", readPort(process)));
+                }
+                DistributedStrategy strategy = new DistributedStrategy(addresses,
+                        TimeUnit.HOURS.toMillis(1), depth);
+                long nodes = 0;
+                long time = 0;
+                for (Board board : positions) {
+                    Marble marble = board.getPlies() % 2 == 0 ? Marble.BLACK : Marble.WHITE;
+                    long start = System.nanoTime();
+                    strategy.determineMove(board, marble);
+                    time += System.nanoTime() - start;
+                    nodes += strategy.getLastNodes();
+                }
+                strategy.close();
+                double millis = time / 1e6;
+                if (count == 1) {
+                    baseline = millis;
+                }
+                System.out.printf("%7d %13.1f %11.0f %11.2f%n", count, millis,
+                        nodes / (millis / 1000), baseline / millis);
+            } finally {
+                for (Process process : processes) {
+                    process.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a worker process with the class path of this process on any free port.
+     *
+     * @param megabytes the table size of the worker
+     * @return the worker process
+     * @throws IOException if the process cannot be started
+     */
+    private static Process startWorker(int megabytes) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator
+                + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                RunSearchWorker.class.getName(), "0", String.valueOf(megabytes))
+                .redirectErrorStream(true)
+                .start();
+    }
+
+    /**
+     * Reads the port a worker process prints once it listens.
+     *
+     * @param process the worker process
+     * @return the port of the worker
+     * @throws IOException if the worker stops before printing its port
+     */
+    private static int readPort(Process process) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith(RunSearchWorker.LISTENING)) {
+                return Integer.parseInt(line.substring(RunSearchWorker.LISTENING.length()));
+            }
+        }
+        throw new IOException("The search worker stopped without listening");
+    }
+}
@@ -0,0 +1,108 @@
+package benchmark;
+
+import ai.AlphaBetaStrategy;
+import ai.TranspositionTable;
+import game.Board;
+import game.Marble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelSearchBenchmark {
+    private static final long SEED = 20240101L;
+    private static final int POSITIONS = 8;
+
+    /**
+     * Measures how long the alpha-beta search needs to reach a fixed depth on a fixed set
+     * of positions with 1, 2, 4, ... threads, and prints the speedup compared to one thread
+     * and the average share of cutoffs made by the first move searched.
+     * Arguments: the largest number of threads (default: number of processors),
+     * the depth (default 3) and the table size in megabytes (default 64).
+     *
+     * @param args the optional arguments
+     */
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        List<Board> positions = createPositions();
+        List<Marble> toMove = new ArrayList<>();
+        for (Board board : positions) {
+            toMove.add(board.getPlies() % 2 == 0 ? Marble.BLACK : Marble.WHITE);
+        }
+
+        System.out.println("positions " + positions.size() + ", depth " + depth);
+        System.out.println("threads     time (ms)     nodes/s     speedup   first cut");
+        double baseline = 0;
+        for (int threads : threadCounts(maxThreads)) {
+            long nodes = 0;
+            long time = 0;
+            double firstCuts = 0;
+            for (int i = 0; i < positions.size(); i++) {
+                try (AlphaBetaStrategy strategy = new AlphaBetaStrategy(
+                        TimeUnit.HOURS.toMillis(1), depth, new TranspositionTable(megabytes),
+                        threads)) {
+                    long start = System.nanoTime();
+                    strategy.determineMove(positions.get(i), toMove.get(i));
+                    time += System.nanoTime() - start;
+                    nodes += strategy.getLastNodes();
+                    firstCuts += strategy.getLastFirstMoveCutoffRate();
+                }
+            }
+            double millis = time / 1e6;
+            if (threads == 1) {
+                baseline = millis;
+            }
+            System.out.printf("%7d %13.1f %11.0f %11.2f %10.1f%%%n", threads, millis,
+                    nodes / (millis / 1000), baseline / millis,
+                    100 * firstCuts / positions.size());
+        }
+    }
+
+    /**
+     * Returns the powers of two below the largest number of threads, followed by that number.
+     *
+     * @param maxThreads the largest number of threads
+     * @return the numbers of threads to measure
+     */
+    static List<Integer> threadCounts(int maxThreads) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(maxThreads);
+        return counts;
+    }
+
+    /**
+     * Creates the positions of the benchmark by playing seeded random moves,
+     * skipping positions that are already decided.
+     *
+     * @return the positions of the benchmark
+     */
+    static List<Board> createPositions() {
+        Random random = new Random(SEED);
+        List<Board> positions = new ArrayList<>();
+        while (positions.size() < POSITIONS) {
+            Board board = new Board();
+            Marble marble = Marble.BLACK;
+            int plies = 4 + 2 * positions.size();
+            for (int i = 0; i < plies && !board.gameOver(); i++) {
+                int field;
+                do {
+                    field = random.nextInt(36);
+                } while (!board.checkMove(field, 0));
+                board.processMove(field, random.nextInt(8), marble);
+                marble = marble.other();
+            }
+            if (!board.gameOver()) {
+                positions.add(board);
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,54 @@
+package benchmark;
+
+import ai.Playout;
+import ai.PlayoutResult;
+import game.Board;
+import game.Marble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PlayoutBenchmark {
+    private static final long SEED = 20240101L;
+
+    /**
+     * Plays random games from the empty board on every thread and prints the results
+     * and the number of playouts per second. Arguments: the number of threads
+     * (default: number of processors) and the games per thread (default 1000000).
+     *
+     * @param args the optional arguments
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        long games = args.length > 1 ? Long.parseLong(args[1]) : 1000000L;
+
+        Board board = new Board();
+        Playout seeds = new Playout(SEED);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<PlayoutResult>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            Playout playout = seeds.split();
+            futures.add(pool.submit(() -> {
+                PlayoutResult result = new PlayoutResult();
+                playout.run(board, Marble.BLACK, Marble.BLACK, games, result);
+                return result;
+            }));
+        }
+        PlayoutResult total = new PlayoutResult();
+        for (Future<PlayoutResult> future : futures) {
+            total.add(future.get());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.println("black " + total);
+        System.out.printf("%d threads, %.2f s, %.0f playouts/s, %.0f playouts/s per thread%n",
+                threads, seconds, total.getGames() / seconds, total.getGames() / seconds / threads);
+    }
+}
@@ -1,9 +1,10 @@
 package game;
 
+import java.util.SplittableRandom;
+
 public class Board {
-    /*@ private invariant fields.length == DIM*DIM;
-        private invariant (\forall int i; (i >= 0 && i < DIM*DIM); fields[i] ==
-        Marble.EMPTY || fields[i] == Marble.BLACK || fields[i] == Marble.WHITE);
+    /*@ private invariant (black & white) == 0;
+        private invariant (black & ~FULL) == 0 && (white & ~FULL) == 0;
     @*/
 
     private static final int DIM = 6;
@@ -22,16 +23,40 @@ public class Board {
         " 30 | 31 | 32 |    | 33 | 34 | 35 "};
 
 
-    private final Marble[] fields;
+    public static final int WINNING_LINE_COUNT = 32;
+    private static final long FULL = (1L << (DIM * DIM)) - 1;
+    private static final long[] WINNING_LINES = createWinningLines();
+    private static final int[] QUADRANT_OFFSETS = {0, 3, 3 * DIM, 3 * DIM + 3};
+    private static final long QUADRANT_MASK = 7L | (7L << DIM) | (7L << (2 * DIM));
+    private static final char[] ROTATE_LEFT = createRotationTable(false);
+    private static final char[] ROTATE_RIGHT = createRotationTable(true);
+    private static final long[] SPREAD = createSpreadTable();
+    private static final long[] BLACK_KEYS = createFieldKeys(0x5EED_B1ACL);
+    private static final long[] WHITE_KEYS = createFieldKeys(0x5EED_3417L);
+    private static final long[] BLACK_QUADRANT_KEYS = createQuadrantKeys(BLACK_KEYS);
+    private static final long[] WHITE_QUADRANT_KEYS = createQuadrantKeys(WHITE_KEYS);
+    private static final int[] FIELD_LINES = createFieldLines();
+    private static final int[] QUADRANT_LINES = createQuadrantLines();
+    private static final int ALL_LINES = -1;
+
+    private long black;
+    private long white;
+    private long hash;
+    private int plies;
+    //bit i is set when the colour owns all five fields of WINNING_LINES[i]
+    private int blackLines;
+    private int whiteLines;
 
     /**
-     * Initializes the fields array and setting each one to the empty value.
+     * Initializes the board with every field set to the empty value.
      */
     public Board() {
-        fields = new Marble[36];
-        for (int a = 0; a < 36; a++) {
-            fields[a] = Marble.EMPTY;
-        }
+        black = 0L;
+        white = 0L;
+        hash = 0L;
+        plies = 0;
+        blackLines = 0;
+        whiteLines = 0;
     }
 
     // -- Constructors -----------------------------------------------
@@ -42,16 +67,153 @@ public class Board {
      * @return a board that is a copy of the current board
      */
     /*@ ensures \result != this;
-        ensures (\forall int i; (i >= 0 && i < DIM*DIM); \result.fields[i] == this.fields[i]);
+        ensures (\forall int i; (i >= 0 && i < DIM*DIM); \result.getField(i) == this.getField(i));
      @*/
     public Board copy() {
         Board newBoard = new Board();
-        for (int a = 0; a < DIM * DIM; a++) {
-            newBoard.fields[a] = fields[a];
-        }
+        newBoard.copyFrom(this);
         return newBoard;
     }
 
+    /**
+     * Makes this board a copy of the other board without creating a new board,
+     * so a board can be reused for many games.
+     *
+     * @param other the board that is copied
+     */
+    /*@ requires other != null;
+        ensures (\forall int i; (i >= 0 && i < DIM*DIM); this.getField(i) == other.getField(i));
+     @*/
+    public void copyFrom(Board other) {
+        black = other.black;
+        white = other.white;
+        hash = other.hash;
+        plies = other.plies;
+        blackLines = other.blackLines;
+        whiteLines = other.whiteLines;
+    }
+
+    /**
+     * Builds the masks of all 32 possible lines of five marbles: two per row, two per column,
+     * two on each of the main diagonals and one on each of the four shorter diagonals.
+     *
+     * @return an array containing the mask of every winning line
+     */
+    private static long[] createWinningLines() {
+        long[] lines = new long[WINNING_LINE_COUNT];
+        int c = 0;
+        for (int a = 0; a < DIM; a++) {
+            for (int start = 0; start < 2; start++) {
+                lines[c++] = line(a, start, 0, 1);
+                lines[c++] = line(start, a, 1, 0);
+            }
+        }
+        for (int start = 0; start < 2; start++) {
+            lines[c++] = line(start, start, 1, 1);
+            lines[c++] = line(start, DIM - 1 - start, 1, -1);
+        }
+        lines[c++] = line(0, 1, 1, 1);
+        lines[c++] = line(1, 0, 1, 1);
+        lines[c++] = line(0, 4, 1, -1);
+        lines[c] = line(1, 5, 1, -1);
+        return lines;
+    }
+
+    /**
+     * Builds the mask of the five fields starting at the given row and column
+     * and going in the given direction.
+     *
+     * @param row  row of the first field of the line
+     * @param col  column of the first field of the line
+     * @param dRow the step between two consecutive rows of the line
+     * @param dCol the step between two consecutive columns of the line
+     * @return the mask of the line
+     */
+    private static long line(int row, int col, int dRow, int dCol) {
+        long mask = 0L;
+        for (int a = 0; a < 5; a++) {
+            mask |= 1L << (DIM * (row + a * dRow) + col + a * dCol);
+        }
+        return mask;
+    }
+
+    /**
+     * Builds for every field the set of winning lines going through it,
+     * as a mask with bit i standing for WINNING_LINES[i].
+     *
+     * @return the line masks indexed by field
+     */
+    private static int[] createFieldLines() {
+        int[] lines = new int[DIM * DIM];
+        for (int i = 0; i < DIM * DIM; i++) {
+            for (int l = 0; l < WINNING_LINES.length; l++) {
+                if ((WINNING_LINES[l] & (1L << i)) != 0) {
+                    lines[i] |= 1 << l;
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Builds for every subboard the set of winning lines going through at least one of its cells.
+     *
+     * @return the line masks indexed by quadrant
+     */
+    private static int[] createQuadrantLines() {
+        int[] lines = new int[4];
+        for (int q = 0; q < 4; q++) {
+            for (int cell = 0; cell < 9; cell++) {
+                lines[q] |= FIELD_LINES[QUADRANT_OFFSETS[q] + DIM * (cell / 3) + cell % 3];
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the mask of one of the 32 winning lines, with bit i set for every field i
+     * of the line.
+     *
+     * @param line the number of the line, between 0 and WINNING_LINE_COUNT - 1
+     * @return the mask of the line
+     */
+    //@ requires line >= 0 && line < WINNING_LINE_COUNT;
+    /*@ pure */
+    public static long getWinningLine(int line) {
+        return WINNING_LINES[line];
+    }
+
+    /**
+     * Returns the bitboard with the subboard of the given rotation rotated, without
+     * changing any board.
+     *
+     * @param bits   the bitboard we rotate
+     * @param rotate value of the rotation corresponding to the server's protocol
+     * @return the rotated bitboard
+     */
+    //@ requires rotate >= 0 && rotate < 8;
+    /*@ pure */
+    public static long rotate(long bits, int rotate) {
+        int offset = QUADRANT_OFFSETS[rotate >>> 1];
+        char[] table = (rotate & 1) == 0 ? ROTATE_LEFT : ROTATE_RIGHT;
+        return (bits & ~(QUADRANT_MASK << offset))
+                | (SPREAD[table[pattern(bits, offset)]] << offset);
+    }
+
+    /**
+     * Returns the winning lines a move can change: the lines through the placed marble
+     * and the lines through the rotated subboard.
+     *
+     * @param field  index of the field set by the move
+     * @param rotate value of the rotation of the move
+     * @return the mask of the lines, with bit i standing for getWinningLine(i)
+     */
+    //@ requires field >= 0 && field < 36 && rotate >= 0 && rotate < 8;
+    /*@ pure */
+    public static int getMoveLines(int field, int rotate) {
+        return FIELD_LINES[field] | QUADRANT_LINES[rotate >>> 1];
+    }
+
     /*@ requires row >= 0 && row < DIM;
         requires col >= 0 && row < DIM;
      @*/
@@ -76,7 +238,23 @@ public class Board {
     //@ ensures row >= 0 && row < DIM && col >= 0 && col < DIM ==> \result == true;
     /*@ pure */
     private boolean isField(int row, int col) {
-        return row >= 0 && row <= 6 && col >= 0 && col < 6;
+        return row >= 0 && row < DIM && col >= 0 && col < DIM;
+    }
+
+    /**
+     * Returns the bits of the fields occupied by the given marble.
+     *
+     * @param marble the marble whose fields we want
+     * @return the bitboard of the marble, or the empty fields for Marble.EMPTY
+     */
+    /*@ pure */
+    public long bits(Marble marble) {
+        if (marble == Marble.BLACK) {
+            return black;
+        } else if (marble == Marble.WHITE) {
+            return white;
+        }
+        return ~(black | white) & FULL;
     }
 
     /**
@@ -92,7 +270,14 @@ public class Board {
     /*@ pure */
     public Marble getField(int index) {
         if (isField(index)) {
-            return fields[index];
+            long bit = 1L << index;
+            if ((black & bit) != 0) {
+                return Marble.BLACK;
+            }
+            if ((white & bit) != 0) {
+                return Marble.WHITE;
+            }
+            return Marble.EMPTY;
         }
         return null;
     }
@@ -111,7 +296,7 @@ public class Board {
     /*@ pure */
     public Marble getField(int row, int col) {
         if (isField(row, col)) {
-            return fields[index(row, col)];
+            return getField(index(row, col));
         }
         return null;
     }
@@ -127,7 +312,7 @@ public class Board {
      @*/
     /*@ pure */
     private boolean isEmptyField(int index) {
-        return isField(index) && fields[index].equals(Marble.EMPTY);
+        return isField(index) && ((black | white) & (1L << index)) == 0;
     }
 
     /**
@@ -136,15 +321,21 @@ public class Board {
      * @return whether the board has at least one empty field or not.
      */
     /*@ ensures (\forall int i; (i >= 0 && i < DIM*DIM);
-        fields[i] == Marble.BLACK || fields[i] == Marble.BLACK);
+        getField(i) == Marble.BLACK || getField(i) == Marble.WHITE);
     @*/
     /*@ pure */public boolean isFull() {
-        for (int i = 0; i < 36; i++) {
-            if (fields[i].equals(Marble.EMPTY)) {
-                return false;
-            }
-        }
-        return true;
+        return plies == DIM * DIM;
+    }
+
+    /**
+     * Returns the number of marbles on the board, which is the number of moves
+     * played when the board is only changed through moves.
+     *
+     * @return the number of non-empty fields
+     */
+    //@ ensures \result >= 0 && \result <= DIM*DIM;
+    /*@ pure */public int getPlies() {
+        return plies;
     }
 
     /**
@@ -159,203 +350,273 @@ public class Board {
     }
 
     /**
-     * Checks whether the board has 5 marbles consecutive on a major diagonal.
+     * Returns which of the given winning lines are fully covered by the given bits.
      *
-     * @param marble marble we want to check if it has a winning major diagonal
-     * @return whether the marble has a major diagonal
+     * @param bits  the bitboard of the marble we want to check
+     * @param lines mask of the winning lines we want to check
+     * @return the mask of the checked lines covered by the bits
      */
-    /*@ requires marble != null;
-        ensures (\forall int i; (i >= 0 && i < DIM);
-        this.fields[index(i,i)] == marble) ==> \result == true;
-    @*/
-    /*@ pure */private boolean hasMajorDiagonal(Marble marble) {
-        boolean[] checker = new boolean[4];
-
-        for (int a = 0; a < 5; a++) {
-            if (!fields[index(a, a)].equals(marble)) {
-                checker[0] = true;
-            }
-            if (!fields[index(a + 1, a + 1)].equals(marble)) {
-                checker[1] = true;
+    /*@ pure */private static int completedLines(long bits, int lines) {
+        int completed = 0;
+        while (lines != 0) {
+            int l = Integer.numberOfTrailingZeros(lines);
+            lines &= lines - 1;
+            if ((bits & WINNING_LINES[l]) == WINNING_LINES[l]) {
+                completed |= 1 << l;
             }
         }
+        return completed;
+    }
 
-        for (int a = 5; a >= 1; a--) {
-            if (!fields[index(5 - a, a)].equals(marble)) {
-                checker[2] = true;
-            }
-            if (!fields[index(6 - a, a - 1)].equals(marble)) {
-                checker[3] = true;
-            }
+    /**
+     * Rechecks the given winning lines for both colours after some of their fields changed.
+     * The lines that were not touched keep their previous state.
+     *
+     * @param lines mask of the winning lines that might have changed
+     */
+    private void updateLines(int lines) {
+        blackLines = (blackLines & ~lines) | completedLines(black, lines);
+        whiteLines = (whiteLines & ~lines) | completedLines(white, lines);
+    }
+
+    /**
+     * Checks if the given marble is the winner by checking each winning line.
+     *
+     * @param marble marble we want to check if it is a winner
+     * @return whether the given marble is the winner
+     */
+    /*@
+        requires marble == Marble.BLACK || marble == Marble.WHITE;
+        ensures (\exists int i; (i >= 0 && i < 32);
+        (bits(marble) & WINNING_LINES[i]) == WINNING_LINES[i]) ==> \result == true;
+     @*/
+    /*@ pure */public boolean isWinner(Marble marble) {
+        if (marble == Marble.BLACK) {
+            return blackLines != 0;
+        } else if (marble == Marble.WHITE) {
+            return whiteLines != 0;
         }
-        return !checker[0] || !checker[1] || !checker[2] || !checker[3];
+        return false;
     }
 
+
     /**
-     * Checks whether the board has 5 marbles consecutive on a minor diagonal.
+     * Checks if the board has a winner.
      *
-     * @param marble marble we want to check if it has a winning minor diagonal
-     * @return whether the marble has a minor diagonal
+     * @return if the board has a winner or not
      */
-    /*@ requires marble != null;
-        ensures (\forall int i; (i >= 0 && i < DIM);
-        this.fields[index(i,i + 1)] == marble) ==> \result == true;
-    @*/
-    /*@ pure */private boolean hasMinorDiagonal(Marble marble) {
-        boolean[] checker = new boolean[4];
+    //@ ensures isWinner(Marble.BLACK) || isWinner(Marble.WHITE) ==> \result == true;
+    /*@ pure */public boolean hasWinner() {
+        return (blackLines | whiteLines) != 0;
+    }
 
-        for (int a = 0; a < 5; a++) {
-            if (!fields[index(a, a + 1)].equals(marble)) {
-                checker[0] = true;
-            }
-            if (!fields[index(a + 1, a)].equals(marble)) {
-                checker[1] = true;
-            }
+    /**
+     * Returns the marble that has five in a row. When a rotation completes
+     * a line for both marbles, black is returned, like the server does.
+     *
+     * @return BLACK or WHITE for the winner, EMPTY if there is no winner
+     */
+    //@ ensures hasWinner() <==> \result != Marble.EMPTY;
+    /*@ pure */public Marble getWinner() {
+        if (blackLines != 0) {
+            return Marble.BLACK;
+        } else if (whiteLines != 0) {
+            return Marble.WHITE;
         }
+        return Marble.EMPTY;
+    }
 
-        for (int a = 0; a < 5; a++) {
-            if (!fields[index(a, 4 - a)].equals(marble)) {
-                checker[2] = true;
-            }
-            if (!fields[index(a + 1, 5 - a)].equals(marble)) {
-                checker[3] = true;
-            }
-        }
 
-        return !checker[0] || !checker[1] || !checker[2] || !checker[3];
+    /**
+     * Returns the quadrant whose top left cell is at the given row and column.
+     *
+     * @param row row of the starting index for the subboard
+     * @param col col of the starting index for the subboard
+     * @return 0 for top left, 1 for top right, 2 for bottom left and 3 for bottom right
+     */
+    /*@ requires row >= 0 && row < 6 && col >= 0 && col < 6;
+        ensures \result >= 0 && \result < 4;
+     @*/
+    /*@ pure */
+    private static int quadrant(int row, int col) {
+        return (row / 3) * 2 + col / 3;
     }
 
     /**
-     * Checks whether the board has 5 marbles consecutive on a row.
+     * Reads the 3x3 subboard starting at the given offset as a 9 bit pattern,
+     * with bit 3 * row + col of the pattern holding the cell at that row and column.
      *
-     * @param marble marble we want to check if it has a winning row
-     * @return whether the marble has a winning row
+     * @param bits   the bitboard we read from
+     * @param offset index of the top left cell of the subboard
+     * @return the pattern of the subboard
      */
-    /*@
-        requires marble != null;
-        ensures (\forall int i; (i >= 0 && i < DIM);
-        this.fields[index(0, i)] == marble) ==> \result == true;
-    @*/
-    /*@ pure */private boolean hasHorizontalLine(Marble marble) {
-        boolean[] checker = new boolean[2];
-
-        for (int a = 0; a < 6; a++) {
-            checker = new boolean[2];
-            for (int j = 0; j < 5; j++) {
-                if (!fields[index(a, j)].equals(marble)) {
-                    checker[0] = true;
-                    break;
-                }
-            }
-            if (!checker[0]) {
-                break;
-            }
+    /*@ pure */
+    static int pattern(long bits, int offset) {
+        return (int) (((bits >>> offset) & 7) | (((bits >>> (offset + DIM)) & 7) << 3)
+                | (((bits >>> (offset + 2 * DIM)) & 7) << 6));
+    }
 
-            for (int j = 1; j < 6; j++) {
-                if (!fields[index(a, j)].equals(marble)) {
-                    checker[1] = true;
-                    break;
+    /**
+     * Builds the table that maps every 9 bit pattern to the pattern rotated to the left
+     * (counter-clockwise) or to the right (clockwise).
+     *
+     * @param clockwise whether the table rotates to the right
+     * @return the rotation table indexed by pattern
+     */
+    private static char[] createRotationTable(boolean clockwise) {
+        char[] table = new char[512];
+        for (int p = 0; p < 512; p++) {
+            int rotated = 0;
+            for (int cell = 0; cell < 9; cell++) {
+                if ((p & (1 << cell)) != 0) {
+                    int r = cell / 3;
+                    int c = cell % 3;
+                    rotated |= clockwise ? 1 << (3 * c + 2 - r) : 1 << (3 * (2 - c) + r);
                 }
             }
-            if (!checker[1]) {
-                break;
-            }
+            table[p] = (char) rotated;
         }
-        return !checker[0] || !checker[1];
+        return table;
     }
 
     /**
-     * Checks whether the board has 5 marbles consecutive on a column.
+     * Builds the table that places every 9 bit pattern back on the rows of the top left
+     * subboard of a bitboard.
      *
-     * @param marble marble we want to check if it has a winning column
-     * @return whether the marble has a winning column
+     * @return the table of bitboards indexed by pattern
      */
-    /*@
-        requires marble != null;
-        ensures (\forall int i; (i >= 0 && i < DIM);
-        this.fields[index(i, 0)] == marble) ==> \result == true;
-    @*/
-    /*@ pure */private boolean hasVerticalLine(Marble marble) {
-        boolean[] checker = new boolean[2];
-
-        for (int a = 0; a < 6; a++) {
-            checker = new boolean[2];
-            for (int j = 0; j < 5; j++) {
-                if (!fields[index(j, a)].equals(marble)) {
-                    checker[0] = true;
-                    break;
-                }
-            }
-            if (!checker[0]) {
-                break;
-            }
-
-            for (int j = 1; j < 6; j++) {
-                if (!fields[index(j, a)].equals(marble)) {
-                    checker[1] = true;
-                    break;
-                }
-            }
-            if (!checker[1]) {
-                break;
-            }
-
+    private static long[] createSpreadTable() {
+        long[] table = new long[512];
+        for (int p = 0; p < 512; p++) {
+            table[p] = (p & 7) | ((long) ((p >>> 3) & 7) << DIM)
+                    | ((long) ((p >>> 6) & 7) << (2 * DIM));
         }
-        return !checker[0] || !checker[1];
+        return table;
     }
 
     /**
-     * Checks if the given marble is the winner by checking each winning case.
+     * Places a 9 bit pattern on the subboard of the given quadrant of an empty bitboard.
      *
-     * @param marble marble we want to check if it is a winner
-     * @return whether the given marble is the winner
+     * @param pattern  the pattern of the subboard
+     * @param quadrant 0 for top left, 1 for top right, 2 for bottom left and 3 for bottom right
+     * @return the bitboard containing only the pattern
      */
-    /*@
-        requires marble == Marble.BLACK || marble == Marble.WHITE;
-        ensures hasHorizontalLine(marble) || hasVerticalLine(marble) ||
-        hasMajorDiagonal(marble) || hasMinorDiagonal(marble)==> \result == true;
-     @*/
-    /*@ pure */public boolean isWinner(Marble marble) {
-        return marble != Marble.EMPTY &&
-                (hasVerticalLine(marble) ||
-                        hasMajorDiagonal(marble) ||
-                        hasMinorDiagonal(marble) || hasHorizontalLine(marble));
+    /*@ pure */
+    static long spread(int pattern, int quadrant) {
+        return SPREAD[pattern] << QUADRANT_OFFSETS[quadrant];
     }
 
+    /**
+     * Returns the index of the top left cell of the given quadrant.
+     *
+     * @param quadrant 0 for top left, 1 for top right, 2 for bottom left and 3 for bottom right
+     * @return the index of the first field of the quadrant
+     */
+    /*@ pure */
+    static int quadrantOffset(int quadrant) {
+        return QUADRANT_OFFSETS[quadrant];
+    }
 
     /**
-     * Checks if the board has a winner.
+     * Creates a board holding the given bitboards, with its hash computed from scratch.
+     * Used to rebuild a board that was sent as its two bitboards.
      *
-     * @return if the board has a winner or not
+     * @param black the fields of the black marbles
+     * @param white the fields of the white marbles
+     * @return the new board
      */
-    //@ ensures isWinner(Marble.BLACK) || isWinner(Marble.WHITE) ==> \result == true;
-    /*@ pure */public boolean hasWinner() {
-        return isWinner(Marble.BLACK) || isWinner(Marble.WHITE);
+    //@ requires (black & white) == 0 && ((black | white) & ~FULL) == 0;
+    public static Board fromBits(long black, long white) {
+        Board board = new Board();
+        board.black = black;
+        board.white = white;
+        for (int q = 0; q < 4; q++) {
+            board.hash ^= BLACK_QUADRANT_KEYS[(q << 9) | pattern(black, QUADRANT_OFFSETS[q])]
+                    ^ WHITE_QUADRANT_KEYS[(q << 9) | pattern(white, QUADRANT_OFFSETS[q])];
+        }
+        board.plies = Long.bitCount(black | white);
+        board.updateLines(ALL_LINES);
+        return board;
     }
 
+    /**
+     * Builds the Zobrist keys of every field for one colour. The generator is seeded
+     * with a constant so that every client and server computes the same keys.
+     *
+     * @param seed the seed of the colour's keys
+     * @return a random 64 bit key for every field
+     */
+    private static long[] createFieldKeys(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] keys = new long[DIM * DIM];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
 
     /**
-     * Changes the subboard into its matrix transpose corresponding to the given row and column.
+     * Builds, for every subboard and every 9 bit pattern, the XOR of the field keys
+     * of the cells set in the pattern. A rotation then changes the hash by two lookups
+     * per colour instead of one XOR per moved marble.
      *
-     * @param row row of the starting index for the subboard
-     * @param col col of the starting index for the subboard
+     * @param fieldKeys the keys of every field for one colour
+     * @return the keys indexed by subboard * 512 + pattern
      */
-    /*@ requires row > 0 && row < 6 && col > 0 && col < 6;
-        ensures (\forall int i; (i >= 0 && i < row + 3);(\forall int j; (j >= 0 && j < col + 3);
-        fields[index(i, j)] == \old(fields[index(j - col + row, i + col - row)])));
-     @*/
-    private void calculateTranspose(int row, int col) {
-        Marble[] copy = fields.clone();
-        for (int i = row; i < (row + 3); i++) {
-            for (int j = col; j < (col + 3); j++) {
-                fields[index(i, j)] = copy[index(j - col + row, i + col - row)];
+    private static long[] createQuadrantKeys(long[] fieldKeys) {
+        long[] keys = new long[4 * 512];
+        for (int q = 0; q < 4; q++) {
+            for (int p = 0; p < 512; p++) {
+                long key = 0L;
+                for (int cell = 0; cell < 9; cell++) {
+                    if ((p & (1 << cell)) != 0) {
+                        key ^= fieldKeys[QUADRANT_OFFSETS[q] + DIM * (cell / 3) + cell % 3];
+                    }
+                }
+                keys[(q << 9) | p] = key;
             }
         }
+        return keys;
+    }
+
+    /**
+     * Rotates both colours with the rotation of the given protocol code and
+     * updates the hash with the key difference of the rotated subboard.
+     * The even codes rotate a subboard to the left, the odd ones to the right.
+     * The winning lines are not updated.
+     *
+     * @param rotate value of the rotation corresponding to the server's protocol
+     */
+    //@ requires rotate >= 0 && rotate < 8;
+    private void rotateBits(int rotate) {
+        int quadrant = rotate >>> 1;
+        int offset = QUADRANT_OFFSETS[quadrant];
+        char[] table = (rotate & 1) == 0 ? ROTATE_LEFT : ROTATE_RIGHT;
+        long clear = ~(QUADRANT_MASK << offset);
+        int blackPattern = pattern(black, offset);
+        int whitePattern = pattern(white, offset);
+        int blackRotated = table[blackPattern];
+        int whiteRotated = table[whitePattern];
+        black = (black & clear) | (SPREAD[blackRotated] << offset);
+        white = (white & clear) | (SPREAD[whiteRotated] << offset);
+        int base = quadrant << 9;
+        hash ^= BLACK_QUADRANT_KEYS[base | blackPattern]
+                ^ BLACK_QUADRANT_KEYS[base | blackRotated]
+                ^ WHITE_QUADRANT_KEYS[base | whitePattern]
+                ^ WHITE_QUADRANT_KEYS[base | whiteRotated];
     }
 
-    //The method rotates the subboard to the left by replacing the
-    // first column of the transpose matrix with the third column of
-    // the subboard. The transpose is calulated with another method.
+    /**
+     * Rotates both colours with the rotation of the given protocol code and rechecks
+     * the winning lines going through the rotated subboard.
+     *
+     * @param rotate value of the rotation corresponding to the server's protocol
+     */
+    //@ requires rotate >= 0 && rotate < 8;
+    private void applyRotation(int rotate) {
+        rotateBits(rotate);
+        updateLines(QUADRANT_LINES[rotate >>> 1]);
+    }
 
     /**
      * Rotates to the left the subboard corresponding to the given row and column.
@@ -363,18 +624,13 @@ public class Board {
      * @param row row of the starting index for the subboard
      * @param col col of the starting index for the subboard
      */
-    /*@ requires row > 0 && row < 6 && col > 0 && col < 6;
+    /*@ requires row >= 0 && row < 6 && col >= 0 && col < 6;
         ensures (\forall int i; (i >= 0 && i < col + 3);
-        fields[index(row, i)] == \old(fields[index(row + 2, i)]) &&
-        fields[index(row + 2, i)] == \old(fields[index(row, i)]));
+        getField(row, i) == \old(getField(row + 2, i)) &&
+        getField(row + 2, i) == \old(getField(row, i)));
      @*/
     public void rotateLeft(int row, int col) {
-        calculateTranspose(row, col);
-        for (int i = col; i < (col + 3); i++) {
-            Marble temp = fields[index(row, i)];
-            fields[index(row, i)] = fields[index(row + 2, i)];
-            fields[index(row + 2, i)] = temp;
-        }
+        applyRotation(2 * quadrant(row, col));
     }
 
     /**
@@ -383,29 +639,26 @@ public class Board {
      * @param row row of the starting index for the subboard
      * @param col col of the starting index for the subboard
      */
-    /*@ requires row > 0 && row < 6 && col > 0 && col < 6;
+    /*@ requires row >= 0 && row < 6 && col >= 0 && col < 6;
         ensures (\forall int i; (i >= 0 && i < row + 3);
-        fields[index(i, col)] == \old(fields[index(i, col + 2)]) &&
-        fields[index(i, col + 2)] == \old(fields[index(i, col)]));
+        getField(i, col) == \old(getField(i, col + 2)) &&
+        getField(i, col + 2) == \old(getField(i, col)));
      @*/
     public void rotateRight(int row, int col) {
-        calculateTranspose(row, col);
-        for (int i = row; i < (row + 3); i++) {
-            Marble temp = fields[index(i, col)];
-            fields[index(i, col)] = fields[index(i, col + 2)];
-            fields[index(i, col + 2)] = temp;
-        }
-
+        applyRotation(2 * quadrant(row, col) + 1);
     }
 
     /**
      * Resets the board by setting each field to empty.
      */
-    //@ ensures (\forall int i; (i >= 0 && i < DIM*DIM); fields[i] == Marble.EMPTY);
+    //@ ensures (\forall int i; (i >= 0 && i < DIM*DIM); getField(i) == Marble.EMPTY);
     public void reset() {
-        for (int i = 0; i < 36; i++) {
-            fields[i] = Marble.EMPTY;
-        }
+        black = 0L;
+        white = 0L;
+        hash = 0L;
+        plies = 0;
+        blackLines = 0;
+        whiteLines = 0;
     }
 
     /**
@@ -419,19 +672,29 @@ public class Board {
      @*/
     public void setField(int index, Marble marble) {
         if (isField(index)) {
-            fields[index] = marble;
+            long bit = 1L << index;
+            if ((black & bit) != 0) {
+                hash ^= BLACK_KEYS[index];
+                plies--;
+            } else if ((white & bit) != 0) {
+                hash ^= WHITE_KEYS[index];
+                plies--;
+            }
+            black &= ~bit;
+            white &= ~bit;
+            if (marble == Marble.BLACK) {
+                black |= bit;
+                hash ^= BLACK_KEYS[index];
+                plies++;
+            } else if (marble == Marble.WHITE) {
+                white |= bit;
+                hash ^= WHITE_KEYS[index];
+                plies++;
+            }
+            updateLines(FIELD_LINES[index]);
         }
     }
 
-    //The method applies the move by setting the specified field and making the rotation.
-    //We use a switch to make all possible rotations.
-    //The row and column as the parameters show which subboard we are working with.
-    //It takes the index of row and column and uses it as the top left cell of the 3x3 subboard.
-    //So 0, 0 is for the top left subboard
-    //0, 3 for the top right
-    //3, 0 for the bottom left
-    //3, 3 for bottom right
-
     /**
      * Setts the value of the field at the given row and column to the given value.
      *
@@ -444,10 +707,18 @@ public class Board {
      @*/
     public void setField(int row, int col, Marble marble) {
         if (isField(row, col)) {
-            fields[index(row, col)] = marble;
+            setField(index(row, col), marble);
         }
     }
 
+    //The method applies the move by setting the specified field and making the rotation.
+    //The rotation code selects the subboard (code / 2) and the direction (code % 2),
+    //and the rotation itself is a lookup of the subboard's pattern in a precomputed table.
+    //So 0 and 1 are for the top left subboard
+    //2 and 3 for the top right
+    //4 and 5 for the bottom left
+    //6 and 7 for bottom right
+
     /**
      * Processes the move by setting the marble on the field at
      * the corresponding field and then making the rotation.
@@ -461,32 +732,57 @@ public class Board {
      @*/
     public void processMove(int field, int rotate, Marble marble) {
         setField(field, marble);
-        switch (rotate) {
-            case 0:
-                rotateLeft(0, 0);
-                break;
-            case 1:
-                rotateRight(0, 0);
-                break;
-            case 2:
-                rotateLeft(0, 3);
-                break;
-            case 3:
-                rotateRight(0, 3);
-                break;
-            case 4:
-                rotateLeft(3, 0);
-                break;
-            case 5:
-                rotateRight(3, 0);
-                break;
-            case 6:
-                rotateLeft(3, 3);
-                break;
-            case 7:
-                rotateRight(3, 3);
-                break;
+        if (rotate >= 0 && rotate < 8) {
+            applyRotation(rotate);
+        }
+    }
+
+    /**
+     * Applies the move in place, without any checks. Meant for search code that
+     * undoes the move afterwards with unmakeMove instead of copying the board.
+     *
+     * @param field  index of the empty field we want to change
+     * @param rotate value of the rotation corresponding to the server's protocol
+     * @param marble marble placed on the field, either BLACK or WHITE
+     */
+    /*@ requires checkMove(field, rotate) && marble != Marble.EMPTY;
+     @*/
+    public void makeMove(int field, int rotate, Marble marble) {
+        if (marble == Marble.BLACK) {
+            black |= 1L << field;
+            hash ^= BLACK_KEYS[field];
+        } else {
+            white |= 1L << field;
+            hash ^= WHITE_KEYS[field];
         }
+        plies++;
+        rotateBits(rotate);
+        //only the lines through the placed marble and through the rotated subboard can change
+        updateLines(FIELD_LINES[field] | QUADRANT_LINES[rotate >>> 1]);
+    }
+
+    /**
+     * Undoes a move applied by makeMove by rotating the subboard back
+     * and then emptying the field.
+     *
+     * @param field  index of the field that was set by the move
+     * @param rotate value of the rotation that was applied by the move
+     */
+    /*@ requires field >= 0 && field < 36 && rotate >= 0 && rotate < 8;
+        ensures getField(field) == Marble.EMPTY;
+     @*/
+    public void unmakeMove(int field, int rotate) {
+        rotateBits(rotate ^ 1);
+        long bit = 1L << field;
+        if ((black & bit) != 0) {
+            hash ^= BLACK_KEYS[field];
+        } else if ((white & bit) != 0) {
+            hash ^= WHITE_KEYS[field];
+        }
+        black &= ~bit;
+        white &= ~bit;
+        plies--;
+        updateLines(FIELD_LINES[field] | QUADRANT_LINES[rotate >>> 1]);
     }
 
     /**
@@ -503,6 +799,16 @@ public class Board {
         return rotate >= 0 && rotate <= 7 && isEmptyField(index);
     }
 
+    /**
+     * Returns the Zobrist hash of the position. The hash is kept up to date on every
+     * change of the board, so equal positions have equal hashes on every client and server.
+     *
+     * @return the 64 bit hash of the position
+     */
+    /*@ pure */public long hash() {
+        return hash;
+    }
+
     /**
      * Adds the board representation to a string.
      *
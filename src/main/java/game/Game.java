@@ -5,6 +5,7 @@ public class Game {
     private final Board board;
     private Player[] players;
     private int current;
+    private GameResult result;
 
     /**
      * Creates a new board for the game and stores the values of both players in an array.
@@ -22,11 +23,12 @@ public class Game {
 
     public void reset() {
         current = 0;
+        result = null;
         board.reset();
     }
 
     /**
-     * Processes the move on the board.
+     * Processes the move on the board and, if the move ends the game, stores the result.
      *
      * @param index  index of the field we want to change
      * @param rotate value of the rotation corresponding to the server's protocol
@@ -35,6 +37,24 @@ public class Game {
         board.processMove(index, rotate, players[current].getMarble());
         current++;
         current %= 2;
+        if (result == null && board.gameOver()) {
+            if (board.isWinner(players[0].getMarble())) {
+                result = new GameResult(players[0]);
+            } else if (board.isWinner(players[1].getMarble())) {
+                result = new GameResult(players[1]);
+            } else {
+                result = new GameResult(null);
+            }
+        }
+    }
+
+    /**
+     * Returns the result of the game, computed once when the final move was registered.
+     *
+     * @return the result of the game, or null if the game is not finished
+     */
+    public GameResult getResult() {
+        return result;
     }
 
     /**
@@ -62,16 +82,13 @@ public class Game {
      * @return a string containing the result of the game
      */
     public String printResult() {
-        if (board.gameOver()) {
-            if (board.hasWinner()) {
-                Player winner = board.isWinner(players[0].getMarble()) ? players[0]
-                        : players[1];
+        if (result != null) {
+            if (!result.isDraw()) {
+                Player winner = result.getWinner();
                 return "Player " + winner.getName() + " ("
                         + winner.getMarble().toString() + ") has won!";
             } else {
-                if (board.isFull()) {
-                    return "Draw. There is no winner!";
-                }
+                return "Draw. There is no winner!";
             }
         }
         return null;
@@ -86,6 +103,16 @@ public class Game {
         return board;
     }
 
+    /**
+     * Returns the hash of the current position of the game, which can be used to
+     * check that the client and the server see the same board.
+     *
+     * @return the Zobrist hash of the board
+     */
+    public long hash() {
+        return board.hash();
+    }
+
     /**
      * Returns the players array of the game that contains both players.
      *
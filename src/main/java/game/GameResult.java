@@ -0,0 +1,32 @@
+package game;
+
+public class GameResult {
+    private final Player winner;
+
+    /**
+     * Creates the result of a finished game.
+     *
+     * @param winner the player that won the game, or null if the game ended in a draw
+     */
+    public GameResult(Player winner) {
+        this.winner = winner;
+    }
+
+    /**
+     * Returns the winner of the game.
+     *
+     * @return the player that won, or null in case of a draw
+     */
+    public Player getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns whether the game ended without a winner.
+     *
+     * @return whether the game is a draw
+     */
+    public boolean isDraw() {
+        return winner == null;
+    }
+}
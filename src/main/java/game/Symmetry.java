@@ -0,0 +1,263 @@
+package game;
+
+public class Symmetry {
+    public static final int COUNT = 8;
+    private static final int DIM = 6;
+    private static final int[][] FIELDS = createFieldTables();
+    private static final char[][] PATTERNS = createPatternTables();
+    private static final int[][] QUADRANTS = createQuadrantTables();
+    private static final int[] INVERSE = {0, 3, 2, 1, 4, 5, 6, 7};
+
+    //The 8 symmetries of the board. The first four are the rotations of the whole
+    //board by 0, 90, 180 and 270 degrees clockwise, the last four are the reflections
+    //in the vertical axis, the horizontal axis, the main diagonal and the other diagonal.
+    //Each of them maps the subboards onto subboards, so a move stays a legal move.
+
+    private Symmetry() {
+    }
+
+    /**
+     * Maps the row and column of a cell of an n by n square with the given symmetry.
+     *
+     * @param symmetry the symmetry we apply, between 0 and 7
+     * @param row      row of the cell
+     * @param col      column of the cell
+     * @param n        the largest row and column of the square
+     * @return the index row * (n + 1) + col of the image of the cell
+     */
+    private static int map(int symmetry, int row, int col, int n) {
+        int r;
+        int c;
+        switch (symmetry) {
+            case 1:
+                r = col;
+                c = n - row;
+                break;
+            case 2:
+                r = n - row;
+                c = n - col;
+                break;
+            case 3:
+                r = n - col;
+                c = row;
+                break;
+            case 4:
+                r = row;
+                c = n - col;
+                break;
+            case 5:
+                r = n - row;
+                c = col;
+                break;
+            case 6:
+                r = col;
+                c = row;
+                break;
+            case 7:
+                r = n - col;
+                c = n - row;
+                break;
+            default:
+                r = row;
+                c = col;
+        }
+        return r * (n + 1) + c;
+    }
+
+    /**
+     * Builds for every symmetry the image of every field of the board.
+     *
+     * @return the images indexed by symmetry and field
+     */
+    private static int[][] createFieldTables() {
+        int[][] tables = new int[COUNT][DIM * DIM];
+        for (int s = 0; s < COUNT; s++) {
+            for (int i = 0; i < DIM * DIM; i++) {
+                tables[s][i] = map(s, i / DIM, i % DIM, DIM - 1);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Builds for every symmetry the image of every 9 bit subboard pattern. Every symmetry
+     * of the board acts on the cells inside a subboard like the same symmetry of a 3x3 square.
+     *
+     * @return the images indexed by symmetry and pattern
+     */
+    private static char[][] createPatternTables() {
+        char[][] tables = new char[COUNT][512];
+        for (int s = 0; s < COUNT; s++) {
+            for (int p = 0; p < 512; p++) {
+                int image = 0;
+                for (int cell = 0; cell < 9; cell++) {
+                    if ((p & (1 << cell)) != 0) {
+                        image |= 1 << map(s, cell / 3, cell % 3, 2);
+                    }
+                }
+                tables[s][p] = (char) image;
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Builds for every symmetry the image of every subboard.
+     *
+     * @return the images indexed by symmetry and quadrant
+     */
+    private static int[][] createQuadrantTables() {
+        int[][] tables = new int[COUNT][4];
+        for (int s = 0; s < COUNT; s++) {
+            for (int q = 0; q < 4; q++) {
+                int center = map(s, 3 * (q / 2) + 1, 3 * (q % 2) + 1, DIM - 1);
+                tables[s][q] = (center / DIM / 3) * 2 + (center % DIM) / 3;
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Checks whether the symmetry is a reflection, which turns clockwise
+     * rotations into counter-clockwise ones.
+     *
+     * @param symmetry the symmetry we want to check
+     * @return whether the symmetry is one of the 4 reflections
+     */
+    //@ requires symmetry >= 0 && symmetry < COUNT;
+    /*@ pure */
+    public static boolean isReflection(int symmetry) {
+        return symmetry >= 4;
+    }
+
+    /**
+     * Returns the symmetry that undoes the given one.
+     *
+     * @param symmetry the symmetry we want to undo
+     * @return the inverse symmetry
+     */
+    //@ requires symmetry >= 0 && symmetry < COUNT;
+    /*@ pure */
+    public static int inverse(int symmetry) {
+        return INVERSE[symmetry];
+    }
+
+    /**
+     * Returns the image of the field with the given index.
+     *
+     * @param symmetry the symmetry we apply
+     * @param field    index of the field
+     * @return index of the image of the field
+     */
+    /*@ requires symmetry >= 0 && symmetry < COUNT && field >= 0 && field < 36;
+        ensures \result >= 0 && \result < 36;
+    @*/
+    /*@ pure */
+    public static int transformField(int symmetry, int field) {
+        return FIELDS[symmetry][field];
+    }
+
+    /**
+     * Returns the image of the rotation with the given protocol code. The rotated
+     * subboard is mapped with the symmetry and reflections swap the direction.
+     *
+     * @param symmetry the symmetry we apply
+     * @param rotate   value of the rotation corresponding to the server's protocol
+     * @return the protocol code of the image of the rotation
+     */
+    /*@ requires symmetry >= 0 && symmetry < COUNT && rotate >= 0 && rotate < 8;
+        ensures \result >= 0 && \result < 8;
+    @*/
+    /*@ pure */
+    public static int transformRotation(int symmetry, int rotate) {
+        int direction = isReflection(symmetry) ? (rotate & 1) ^ 1 : rotate & 1;
+        return 2 * QUADRANTS[symmetry][rotate >>> 1] + direction;
+    }
+
+    /**
+     * Returns the image of the given bitboard.
+     *
+     * @param symmetry the symmetry we apply
+     * @param bits     the bitboard we want to map
+     * @return the bitboard of the image
+     */
+    /*@ pure */
+    private static long transformBits(int symmetry, long bits) {
+        long result = 0L;
+        for (int q = 0; q < 4; q++) {
+            int pattern = Board.pattern(bits, Board.quadrantOffset(q));
+            result |= Board.spread(PATTERNS[symmetry][pattern], QUADRANTS[symmetry][q]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new board holding the image of the given board.
+     *
+     * @param board    the board we want to map
+     * @param symmetry the symmetry we apply
+     * @return the image of the board
+     */
+    /*@ requires board != null && symmetry >= 0 && symmetry < COUNT;
+        ensures (\forall int i; (i >= 0 && i < 36);
+        \result.getField(transformField(symmetry, i)) == board.getField(i));
+    @*/
+    public static Board transform(Board board, int symmetry) {
+        return Board.fromBits(transformBits(symmetry, board.bits(Marble.BLACK)),
+                transformBits(symmetry, board.bits(Marble.WHITE)));
+    }
+
+    /**
+     * Returns the symmetry that maps the board to its canonical form, which is the image
+     * with the smallest black bitboard, and the smallest white bitboard in case of a tie.
+     * All 8 symmetric positions have the same canonical form.
+     *
+     * @param board the board we want to canonicalize
+     * @return the symmetry mapping the board to its canonical form
+     */
+    //@ ensures \result >= 0 && \result < COUNT;
+    /*@ pure */
+    public static int canonicalSymmetry(Board board) {
+        long black = board.bits(Marble.BLACK);
+        long white = board.bits(Marble.WHITE);
+        int best = 0;
+        long bestBlack = black;
+        long bestWhite = white;
+        for (int s = 1; s < COUNT; s++) {
+            long b = transformBits(s, black);
+            int compare = Long.compareUnsigned(b, bestBlack);
+            if (compare > 0) {
+                continue;
+            }
+            long w = transformBits(s, white);
+            if (compare < 0 || Long.compareUnsigned(w, bestWhite) < 0) {
+                best = s;
+                bestBlack = b;
+                bestWhite = w;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns a new board holding the canonical form of the given board.
+     *
+     * @param board the board we want to canonicalize
+     * @return the canonical form of the board
+     */
+    public static Board canonical(Board board) {
+        return transform(board, canonicalSymmetry(board));
+    }
+
+    /**
+     * Returns the hash of the canonical form of the board, which is the same
+     * for all 8 symmetric positions.
+     *
+     * @param board the board we want to hash
+     * @return the Zobrist hash of the canonical form
+     */
+    /*@ pure */
+    public static long canonicalHash(Board board) {
+        return canonical(board).hash();
+    }
+}
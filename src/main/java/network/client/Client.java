@@ -1,9 +1,15 @@
 package network.client;
 
+import ai.AlphaBetaStrategy;
+import ai.DistributedStrategy;
+import ai.MctsStrategy;
 import ai.Move;
 import ai.NaiveStrategy;
+import ai.PonderingStrategy;
+import ai.SearchLimits;
 import ai.SmartStrategy;
 import ai.Strategy;
+import ai.ThreatAnalyzer;
 import exceptions.ConnectionFailed;
 import exceptions.InvalidMessage;
 import exceptions.InvalidUsername;
@@ -15,11 +21,24 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class Client implements GameClient, Runnable {
+    //the longest time in milliseconds the ai may think about a move or a hint
+    private static final long MOVE_TIME = 2000;
+    //the Monte Carlo search of the client leaves half the processors to the rest of the
+    //machine and keeps its two trees at about 6 MB each, a full tree stops growing but
+    //the playouts go on
+    private static final int MCTS_THREADS =
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int MCTS_CAPACITY = 1 << 18;
     static Socket socket;
     static PrintWriter writer;
     static BufferedReader in;
@@ -31,9 +50,12 @@ public class Client implements GameClient, Runnable {
     private Game game;
     private int current;
     private boolean hasAi;
-    private boolean strategy;
-    private Strategy strategyEasy;
-    private Strategy strategyHard;
+    private String difficulty;
+    //the strategies are made when a difficulty is first used, most users only play one
+    private Map<String, Supplier<Strategy>> factories;
+    private Map<String, Strategy> strategies;
+    private final ThreatAnalyzer threats = new ThreatAnalyzer();
+    private boolean ponder = true;
     private boolean autoQueue;
     private boolean queue;
 
@@ -149,27 +171,25 @@ public class Client implements GameClient, Runnable {
                     if (lines.length == 2) {
                         //checks whether the client is already using tha AI
                         if (!hasAi) {
-                            //checks whether the difficulty
-                            if (lines[1].equals("easy")) {
-                                strategy = false;
-                            } else if (lines[1].equals("hard")) {
-                                strategy = true;
-                            } else {
+                            //checks whether the difficulty exists
+                            if (!factories.containsKey(lines[1])) {
                                 sendToListener("Wrong Command!");
                                 break;
                             }
-                            Move move;
-
-                            //checks the strategy and determines the move
-                            if (strategy) {
-                                move = strategyHard.determineMove(getGame().getBoard(), marble);
-                            } else {
-                                move = strategyEasy.determineMove(getGame().getBoard(), marble);
-                            }
+                            //a forced win is suggested whatever the difficulty, otherwise
+                            //the move is determined with the strategy of the difficulty
+                            int win = getGame().getBoard().gameOver() ? -1
+                                    : threats.forcedWin(getGame().getBoard().copy(), marble,
+                                    ThreatAnalyzer.DEFAULT_PLIES, ThreatAnalyzer.DEFAULT_NODES);
+                            Move move = win >= 0 ? Move.of(win)
+                                    : strategy(lines[1]).determineMove(getGame().getBoard(),
+                                    marble, SearchLimits.moveTime(MOVE_TIME));
                             //send the hinted move to the listeners
-                            sendToListener("Suggested move by the ai is " + move.getIndex()
-                                    + " " + move.getRotation());
-                            strategy = false;
+                            if (move != null) {
+                                sendToListener("Suggested move by the ai is " + move.getIndex()
+                                        + " " + move.getRotation()
+                                        + (win >= 0 ? ", it forces a win" : ""));
+                            }
                         } else {
                             sendToListener("The ai is already playing the game");
                         }
@@ -188,13 +208,9 @@ public class Client implements GameClient, Runnable {
                     //checks whether the client is already using the AI
                     if (!hasAi) {
                         //checks the difficulty of the AI that is in the command
-                        if (lines[2].equals("easy") && lines[1].equals("ai")) {
-                            strategy = false;
-                            sendToListener("The ai (easy difficulty) " +
-                                    "will play the next matches");
-                        } else if (lines[2].equals("hard") && lines[1].equals("ai")) {
-                            strategy = true;
-                            sendToListener("The ai (hard difficulty) " +
+                        if (lines[1].equals("ai") && factories.containsKey(lines[2])) {
+                            difficulty = lines[2];
+                            sendToListener("The ai (" + difficulty + " difficulty) " +
                                     "will play the next matches");
                         } else {
                             sendToListener("Wrong Command!");
@@ -255,6 +271,14 @@ public class Client implements GameClient, Runnable {
             case "rank":
                 writer.println("RANK");
                 break;
+            //for 'ponder' it toggles whether the playing AI searches on the opponent's time
+            case "ponder":
+                ponder = !ponder;
+                if (!ponder) {
+                    stopPondering();
+                }
+                sendToListener("Pondering of the ai is turned " + (ponder ? "on" : "off"));
+                break;
             //for 'autoqueue' it changes the autoqueue boolean variable to true/false
             // to show that the auto-queue toggle is on/off.
             case "autoqueue":
@@ -302,10 +326,11 @@ public class Client implements GameClient, Runnable {
     }
 
     /**
-     * Closes the socket and removes the TUI from the listeners.
+     * Closes the strategies and the socket and removes the TUI from the listeners.
      */
     @Override
     public void close() {
+        closeStrategies();
         try {
             socket.close();
         } catch (IOException e) {
@@ -377,12 +402,84 @@ public class Client implements GameClient, Runnable {
     }
 
     /**
-     * Set the value of the strategy field to the value of the parameter.
+     * Set the difficulty of the AI that plays the games.
+     *
+     * @param difficulty easy, hard, expert or mcts
+     */
+    public void setDifficulty(String difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Returns whether there is an AI with the given difficulty.
+     *
+     * @param difficulty the difficulty we want to check
+     * @return whether the difficulty can be used for hints and AI play
+     */
+    public boolean isDifficulty(String difficulty) {
+        return factories != null && factories.containsKey(difficulty);
+    }
+
+    /**
+     * Returns the strategy of the given difficulty, which is made when it is first used.
+     *
+     * @param difficulty the difficulty of the strategy
+     * @return the strategy
+     */
+    //@ requires isDifficulty(difficulty);
+    private Strategy strategy(String difficulty) {
+        return strategies.computeIfAbsent(difficulty, name -> factories.get(name).get());
+    }
+
+    /**
+     * Closes the strategies that were made, which stops their threads and connections.
+     */
+    private void closeStrategies() {
+        if (strategies == null) {
+            return;
+        }
+        for (Strategy strategy : strategies.values()) {
+            strategy.close();
+        }
+        strategies.clear();
+    }
+
+    /**
+     * Lets the AI of the chosen difficulty determine a move and sends it to the server.
      *
-     * @param strategy the value we want to set the strategy field to
+     * @throws InvalidMessage if the move message is null
+     */
+    private void playAi() throws InvalidMessage {
+        Move move = strategy(difficulty).determineMove(getGame().getBoard(), marble,
+                SearchLimits.moveTime(MOVE_TIME));
+        if (move != null) {
+            sendMessage("move " + move.getIndex() + " " + move.getRotation());
+        }
+    }
+
+    /**
+     * Lets the AI search the opponent's position while the opponent is thinking,
+     * if pondering is on and the strategy of the chosen difficulty supports it.
+     */
+    private void startPondering() {
+        Strategy strategy = strategy(difficulty);
+        if (ponder && strategy instanceof PonderingStrategy) {
+            ((PonderingStrategy) strategy).ponder(game.getBoard(), playerOpponent.getMarble());
+        }
+    }
+
+    /**
+     * Stops the background search of every strategy that is pondering.
      */
-    public void setStrategy(boolean strategy) {
-        this.strategy = strategy;
+    private void stopPondering() {
+        if (strategies == null) {
+            return;
+        }
+        for (Strategy strategy : strategies.values()) {
+            if (strategy instanceof PonderingStrategy) {
+                ((PonderingStrategy) strategy).stopPondering();
+            }
+        }
     }
 
     /**
@@ -447,44 +544,58 @@ public class Client implements GameClient, Runnable {
                     //For the command 'MOVE' it registers the move of the player and
                     // then sends the listener whether it is his turn.
                     case "MOVE":
+                        Move played = Move.fromProtocol(line);
+                        if (played == null) {
+                            break;
+                        }
+                        //the search on the opponent's time ends when a move arrives, the
+                        //strategy keeps what it found for the position after the move
+                        stopPondering();
                         sendToListener("Player " + game.getPlayers()[game.getCurrent()].getName()
-                                + " made the move " + lines[1] + " " + lines[2]);
-                        game.registerMove(Integer.parseInt(lines[1]), Integer.parseInt(lines[2]));
+                                + " made the move " + played.getIndex() + " "
+                                + played.getRotation());
+                        game.registerMove(played.getIndex(), played.getRotation());
                         sendToListener(game.update());
                         //checks whether the client is the current player
                         if (game.getCurrent() == current) {
                             sendToListener("It is your turn now!");
                             if (hasAi) {
-                                if (strategy) {
-                                    Move move = strategyHard.determineMove(
-                                            getGame().getBoard(), marble);
-                                    if (move != null) {
-                                        sendMessage("move " + move.getIndex()
-                                                + " " + move.getRotation());
-                                    }
-                                } else {
-                                    Move move = strategyEasy.determineMove(
-                                            getGame().getBoard(), marble);
-                                    if (move != null) {
-                                        sendMessage("move " + move.getIndex()
-                                                + " " + move.getRotation());
-                                    }
-                                }
+                                playAi();
                             } else {
                                 sendToListener("Enter a move using the format:" +
                                         " move index rotation");
                             }
                         } else {
                             sendToListener("It is opponent's turn now! ");
+                            if (hasAi) {
+                                startPondering();
+                            }
                         }
                         break;
 
                     //For the 'LOGIN' command it sends the listener a message
                     // that he has successfully logged in.
                     case "LOGIN":
+                        closeStrategies();
+                        strategies = new ConcurrentHashMap<>();
+                        factories = new LinkedHashMap<>();
+                        factories.put("easy", NaiveStrategy::new);
+                        factories.put("hard", SmartStrategy::new);
+                        factories.put("expert", AlphaBetaStrategy::new);
+                        factories.put("mcts", () -> new MctsStrategy(MOVE_TIME, 0,
+                                MCTS_THREADS, MCTS_CAPACITY, System.nanoTime()));
+                        String workers = System.getProperty(DistributedStrategy.PROPERTY);
+                        if (workers != null) {
+                            try {
+                                List<InetSocketAddress> addresses =
+                                        DistributedStrategy.parseAddresses(workers);
+                                factories.put("distributed",
+                                        () -> new DistributedStrategy(addresses));
+                            } catch (IllegalArgumentException e) {
+                                sendToListener("Invalid search workers: " + workers);
+                            }
+                        }
                         sendToListener("Logged in");
-                        strategyEasy = new NaiveStrategy();
-                        strategyHard = new SmartStrategy();
                         break;
 
                     //For the 'ALREADYLOGGEDIN' command it sends the listener a message
@@ -515,22 +626,7 @@ public class Client implements GameClient, Runnable {
                             sendToListener("It is your turn now! ");
                             //checks whether the AI is on
                             if (hasAi) {
-                                //checks which strategy is used
-                                if (strategy) {
-                                    Move move = strategyHard.determineMove(
-                                            getGame().getBoard(), marble);
-                                    if (move != null) {
-                                        sendMessage("move " + move.getIndex()
-                                                + " " + move.getRotation());
-                                    }
-                                } else {
-                                    Move move = strategyEasy.determineMove(
-                                            getGame().getBoard(), marble);
-                                    if (move != null) {
-                                        sendMessage("move " + move.getIndex()
-                                                + " " + move.getRotation());
-                                    }
-                                }
+                                playAi();
                             } else {
                                 sendToListener("Enter a move using the format:" +
                                         " move index rotation");
@@ -563,6 +659,7 @@ public class Client implements GameClient, Runnable {
                     //For the 'GAMEOVER' command it notifies the listeners that the game
                     //has the finished and the reason it finished.
                     case "GAMEOVER":
+                        stopPondering();
                         String reason = lines[1];
                         if (reason.equals("DRAW")) {
                             sendToListener("The game ended in a draw");
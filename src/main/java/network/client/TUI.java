@@ -1,5 +1,9 @@
 package network.client;
 
+import ai.EndgameBitbase;
+import ai.OpeningBook;
+import ai.PatternEvaluator;
+import ai.TranspositionTable;
 import exceptions.ConnectionFailed;
 import exceptions.InvalidMessage;
 import exceptions.InvalidUsername;
@@ -21,21 +25,31 @@ public class TUI implements Listener {
                 " play ai easy\n" +
                 "5.  Toggle on the automatic ai play, hard difficulty:" +
                 " play ai hard\n" +
-                "6.  Suggest move by the ai, easy difficulty:" +
+                "6.  Toggle on the automatic ai play, expert difficulty (searching):" +
+                " play ai expert\n" +
+                "7.  Toggle on the automatic ai play, mcts difficulty (tree search):" +
+                " play ai mcts\n" +
+                "8.  Suggest move by the ai, easy difficulty:" +
                 " hint easy\n" +
-                "7.  Suggest move by the ai, hard difficulty:" +
+                "9.  Suggest move by the ai, hard difficulty:" +
                 " hint hard\n" +
-                "8.  Make move on the board (cannot use while not in a game):" +
+                "10. Suggest move by the ai, expert difficulty:" +
+                " hint expert\n" +
+                "11. Suggest move by the ai, mcts difficulty:" +
+                " hint mcts\n" +
+                "12. Make move on the board (cannot use while not in a game):" +
                 " move integer integer\n" +
-                "9.  List all the usernames of the players in the game:" +
+                "13. List all the usernames of the players in the game:" +
                 " list\n" +
-                "10. List the rank of the players: rank\n" +
-                "11. Send a global message to all the players with the chat extension:" +
+                "14. List the rank of the players: rank\n" +
+                "15. Send a global message to all the players with the chat extension:" +
                 " send everyone: String\n" +
-                "12. Send a private message to a player who has the chat extension:" +
+                "16. Send a private message to a player who has the chat extension:" +
                 " send to username: String\n" +
-                "13. Quit the TUI: quit\n" +
-                "14. Print all the commands: help\n";
+                "17. Toggle on/off the ai searching on the opponent's time:" +
+                " ponder\n" +
+                "18. Quit the TUI: quit\n" +
+                "19. Print all the commands: help\n";
 
 
         System.out.println("Hi!\n" +
@@ -47,21 +61,37 @@ public class TUI implements Listener {
                 " play ai easy\n" +
                 "5.  Toggle on the automatic ai play, hard difficulty:" +
                 " play ai hard\n" +
-                "6.  Suggest move by the ai, easy difficulty:" +
+                "6.  Toggle on the automatic ai play, expert difficulty (searching):" +
+                " play ai expert\n" +
+                "7.  Toggle on the automatic ai play, mcts difficulty (tree search):" +
+                " play ai mcts\n" +
+                "8.  Suggest move by the ai, easy difficulty:" +
                 " hint easy\n" +
-                "7.  Suggest move by the ai, hard difficulty:" +
+                "9.  Suggest move by the ai, hard difficulty:" +
                 " hint hard\n" +
-                "8.  Make move on the board (cannot use while not in a game):" +
+                "10. Suggest move by the ai, expert difficulty:" +
+                " hint expert\n" +
+                "11. Suggest move by the ai, mcts difficulty:" +
+                " hint mcts\n" +
+                "12. Make move on the board (cannot use while not in a game):" +
                 " move integer integer\n" +
-                "9.  List all the usernames of the players in the game:" +
+                "13. List all the usernames of the players in the game:" +
                 " list\n" +
-                "10. List the rank of the players: rank\n" +
-                "11. Send a global message to all the players with the chat extension:" +
+                "14. List the rank of the players: rank\n" +
+                "15. Send a global message to all the players with the chat extension:" +
                 " send everyone: String\n" +
-                "12. Send a private message to a player who has the chat extension:" +
+                "16. Send a private message to a player who has the chat extension:" +
                 " send to username: String\n" +
-                "13. Quit the TUI: quit\n" +
-                "14. Print all the commands: help\n");
+                "17. Toggle on/off the ai searching on the opponent's time:" +
+                " ponder\n" +
+                "18. Quit the TUI: quit\n" +
+                "19. Print all the commands: help\n");
+        //the files of the ai are opened before the first game, so a file that cannot be
+        //used is reported at once
+        report("the opening book", OpeningBook.getDefaultError());
+        report("the endgame bitbase", EndgameBitbase.getDefaultError());
+        report("the evaluation weights", PatternEvaluator.getDefaultError());
+        report("the transposition table", TranspositionTable.getDefaultError());
         login = false;
 
         TUI play = new TUI();
@@ -134,17 +164,13 @@ public class TUI implements Listener {
             }
             if (line.equals("y")) {
                 ((Client) client).setHasAi(true);
-                System.out.println("Which difficulty of the ai do you want? hard/easy");
+                System.out.println("Which difficulty of the ai do you want? easy/hard/expert/mcts");
                 line = reader1.readLine();
-                while (!line.equals("hard") && !line.equals("easy")) {
-                    System.out.println("You have to write hard or easy");
+                while (!((Client) client).isDifficulty(line)) {
+                    System.out.println("You have to write easy, hard, expert or mcts");
                     line = reader1.readLine();
                 }
-                if (line.equals("hard")) {
-                    ((Client) client).setStrategy(true);
-                } else {
-                    ((Client) client).setStrategy(false);
-                }
+                ((Client) client).setDifficulty(line);
             } else {
                 ((Client) client).setHasAi(false);
             }
@@ -204,6 +230,18 @@ public class TUI implements Listener {
 
     }
 
+    /**
+     * Prints why a file of the ai could not be loaded, the ai then plays without it.
+     *
+     * @param file  the name of the file
+     * @param error the error of loading the file, or null if nothing is printed
+     */
+    private static void report(String file, IOException error) {
+        if (error != null) {
+            System.out.println("Could not load " + file + ": " + error.getMessage());
+        }
+    }
+
     /**
      * Prints on the display the messages incoming from the server.
      *
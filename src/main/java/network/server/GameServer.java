@@ -2,6 +2,7 @@ package network.server;
 
 
 import game.Game;
+import game.GameResult;
 import game.Marble;
 import game.Player;
 
@@ -115,43 +116,28 @@ public class GameServer implements Server, Runnable {
                 }
             }
         }
-        //checks whether the game has finished
-        if (game.getBoard().gameOver()) {
-            //check winner of the game and send message to both clients
-            if (game.getBoard().isWinner(playersList.get(0).getMarble())) {
-                for (GameClientHandler pl : list) {
-                    pl.setInGame(false);
-                    pl.sendGame("GAMEOVER~" + "VICTORY~" + playersList.get(0).getName());
-                    if (pl.getPlayer().equals(playersList.get(0))) {
-                        if (rankings.containsKey(pl)) {
-                            rankings.put(pl, rankings.get(pl) + 1);
-                        } else {
-                            rankings.put(pl, 1);
-                        }
-                    }
-                }
-                //delete the game from the map which stores the current games
-                players.remove(game);
-            } else if (game.getBoard().isWinner(playersList.get(1).getMarble())) {
-                for (GameClientHandler pl : list) {
-                    pl.setInGame(false);
-                    pl.sendGame("GAMEOVER~" + "VICTORY~" + playersList.get(1).getName());
-                    if (pl.getPlayer().equals(playersList.get(1))) {
+        //checks whether the game has finished, the result is computed once by the game
+        GameResult result = game.getResult();
+        if (result != null) {
+            Player winner = result.getWinner();
+            for (GameClientHandler pl : list) {
+                pl.setInGame(false);
+                //check winner of the game and send message to both clients
+                if (winner != null) {
+                    pl.sendGame("GAMEOVER~" + "VICTORY~" + winner.getName());
+                    if (pl.getPlayer().equals(winner)) {
                         if (rankings.containsKey(pl)) {
                             rankings.put(pl, rankings.get(pl) + 1);
                         } else {
                             rankings.put(pl, 1);
                         }
                     }
-                }
-                players.remove(game);
-            } else {
-                for (GameClientHandler pl : list) {
-                    pl.setInGame(false);
+                } else {
                     pl.sendGame("GAMEOVER~" + "DRAW");
                 }
-                players.remove(game);
             }
+            //delete the game from the map which stores the current games
+            players.remove(game);
         }
     }
 
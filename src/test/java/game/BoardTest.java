@@ -0,0 +1,95 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BoardTest {
+    private static final long SEED = 20240101L;
+    private static final int POSITIONS = 500;
+
+    /**
+     * Makes and unmakes every legal move of random positions, for both marbles, and checks
+     * that the move gives the same board as processMove with an up to date hash and winner,
+     * and that unmaking it restores the marbles, the hash, the plies and the winner.
+     */
+    @Test
+    public void makeAndUnmakeRoundTrip() {
+        Random random = new Random(SEED);
+        for (int p = 0; p < POSITIONS; p++) {
+            Board board = randomPosition(random);
+            for (Marble marble : new Marble[]{Marble.BLACK, Marble.WHITE}) {
+                for (int field = 0; field < 36; field++) {
+                    if (board.getField(field) != Marble.EMPTY) {
+                        continue;
+                    }
+                    for (int rotate = 0; rotate < 8; rotate++) {
+                        checkRoundTrip(board, field, rotate, marble);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks one move of a position.
+     *
+     * @param board  the board of the position
+     * @param field  the empty field of the move
+     * @param rotate the rotation of the move
+     * @param marble the marble placed by the move
+     */
+    private static void checkRoundTrip(Board board, int field, int rotate, Marble marble) {
+        long black = board.bits(Marble.BLACK);
+        long white = board.bits(Marble.WHITE);
+        long hash = board.hash();
+        int plies = board.getPlies();
+        Marble winner = board.getWinner();
+        String move = field + "~" + rotate + " on " + black + "/" + white;
+
+        Board processed = board.copy();
+        processed.processMove(field, rotate, marble);
+        board.makeMove(field, rotate, marble);
+        assertEquals(processed.bits(Marble.BLACK), board.bits(Marble.BLACK), move);
+        assertEquals(processed.bits(Marble.WHITE), board.bits(Marble.WHITE), move);
+        assertEquals(Board.fromBits(board.bits(Marble.BLACK), board.bits(Marble.WHITE)).hash(),
+                board.hash(), move);
+        assertEquals(processed.getWinner(), board.getWinner(), move);
+        assertEquals(plies + 1, board.getPlies(), move);
+
+        board.unmakeMove(field, rotate);
+        assertEquals(black, board.bits(Marble.BLACK), move);
+        assertEquals(white, board.bits(Marble.WHITE), move);
+        assertEquals(hash, board.hash(), move);
+        assertEquals(plies, board.getPlies(), move);
+        assertEquals(winner, board.getWinner(), move);
+    }
+
+    /**
+     * Plays random moves from the empty board, stopping before the game is decided.
+     *
+     * @param random the random generator
+     * @return a position that is not decided yet
+     */
+    private static Board randomPosition(Random random) {
+        Board board = new Board();
+        Marble marble = Marble.BLACK;
+        int plies = random.nextInt(30);
+        for (int i = 0; i < plies; i++) {
+            int field;
+            do {
+                field = random.nextInt(36);
+            } while (board.getField(field) != Marble.EMPTY);
+            Board next = board.copy();
+            next.processMove(field, random.nextInt(8), marble);
+            if (next.gameOver()) {
+                break;
+            }
+            board = next;
+            marble = marble.other();
+        }
+        return board;
+    }
+}
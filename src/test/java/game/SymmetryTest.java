@@ -0,0 +1,119 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SymmetryTest {
+    private static final long SEED = 20240102L;
+    private static final int POSITIONS = 200;
+
+    /**
+     * Plays every legal move of random positions, for both marbles, and checks for every
+     * symmetry that mapping the board and then playing the mapped move gives the same board
+     * as playing the move and then mapping the board.
+     */
+    @Test
+    public void moveCommutesWithSymmetry() {
+        Random random = new Random(SEED);
+        for (int p = 0; p < POSITIONS; p++) {
+            Board board = randomPosition(random);
+            for (Marble marble : new Marble[]{Marble.BLACK, Marble.WHITE}) {
+                for (int field = 0; field < 36; field++) {
+                    if (board.getField(field) != Marble.EMPTY) {
+                        continue;
+                    }
+                    for (int rotate = 0; rotate < 8; rotate++) {
+                        for (int s = 0; s < Symmetry.COUNT; s++) {
+                            checkMove(board, field, rotate, marble, s);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks for every symmetry that its inverse maps every field, every rotation and
+     * random boards back to themselves.
+     */
+    @Test
+    public void inverseUndoesSymmetry() {
+        for (int s = 0; s < Symmetry.COUNT; s++) {
+            int inverse = Symmetry.inverse(s);
+            for (int field = 0; field < 36; field++) {
+                assertEquals(field, Symmetry.transformField(inverse,
+                        Symmetry.transformField(s, field)), "field " + field + " by " + s);
+            }
+            for (int rotate = 0; rotate < 8; rotate++) {
+                assertEquals(rotate, Symmetry.transformRotation(inverse,
+                        Symmetry.transformRotation(s, rotate)), "rotation " + rotate + " by " + s);
+            }
+        }
+        Random random = new Random(SEED);
+        for (int p = 0; p < POSITIONS; p++) {
+            Board board = randomPosition(random);
+            for (int s = 0; s < Symmetry.COUNT; s++) {
+                Board image = Symmetry.transform(Symmetry.transform(board, s),
+                        Symmetry.inverse(s));
+                String position = board.bits(Marble.BLACK) + "/" + board.bits(Marble.WHITE)
+                        + " by " + s;
+                assertEquals(board.bits(Marble.BLACK), image.bits(Marble.BLACK), position);
+                assertEquals(board.bits(Marble.WHITE), image.bits(Marble.WHITE), position);
+            }
+        }
+    }
+
+    /**
+     * Checks one move of a position with one symmetry.
+     *
+     * @param board    the board of the position
+     * @param field    the empty field of the move
+     * @param rotate   the rotation of the move
+     * @param marble   the marble placed by the move
+     * @param symmetry the symmetry we apply
+     */
+    private static void checkMove(Board board, int field, int rotate, Marble marble,
+                                  int symmetry) {
+        String move = field + "~" + rotate + " by " + symmetry + " on "
+                + board.bits(Marble.BLACK) + "/" + board.bits(Marble.WHITE);
+
+        Board played = board.copy();
+        played.processMove(field, rotate, marble);
+        Board expected = Symmetry.transform(played, symmetry);
+
+        Board image = Symmetry.transform(board, symmetry);
+        image.processMove(Symmetry.transformField(symmetry, field),
+                Symmetry.transformRotation(symmetry, rotate), marble);
+        assertEquals(expected.bits(Marble.BLACK), image.bits(Marble.BLACK), move);
+        assertEquals(expected.bits(Marble.WHITE), image.bits(Marble.WHITE), move);
+    }
+
+    /**
+     * Plays random moves from the empty board, stopping before the game is decided.
+     *
+     * @param random the random generator
+     * @return a position that is not decided yet
+     */
+    private static Board randomPosition(Random random) {
+        Board board = new Board();
+        Marble marble = Marble.BLACK;
+        int plies = random.nextInt(30);
+        for (int i = 0; i < plies; i++) {
+            int field;
+            do {
+                field = random.nextInt(36);
+            } while (board.getField(field) != Marble.EMPTY);
+            Board next = board.copy();
+            next.processMove(field, random.nextInt(8), marble);
+            if (next.gameOver()) {
+                break;
+            }
+            board = next;
+            marble = marble.other();
+        }
+        return board;
+    }
+}